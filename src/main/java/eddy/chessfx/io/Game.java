@@ -0,0 +1,72 @@
+package eddy.chessfx.io;
+
+import eddy.chessfx.logic.Board;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game of a PGN file: its tag pairs, its moves in standard algebraic notation, the result
+ * and the {@link Board} the moves were replayed on.
+ */
+public class Game {
+    private final Map<String, String> tags;
+    private final List<String> sanMoves;
+    private final String result;
+    private final Board board;
+
+    public Game(Map<String, String> tags, List<String> sanMoves, String result, Board board) {
+        this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        this.sanMoves = Collections.unmodifiableList(sanMoves);
+        this.result = result;
+        this.board = board;
+    }
+
+    /**
+     * The game played on {@code board} so far, with its moves taken from the board's history.
+     * A board set up from a FEN gets the SetUp and FEN tags.
+     */
+    public static Game fromBoard(Board board, Map<String, String> tags, String result) {
+        if (board.getStartFen() != null) {
+            tags = new LinkedHashMap<>(tags);
+            tags.put("SetUp", "1");
+            tags.put("FEN", board.getStartFen());
+        }
+        return new Game(tags, board.getSanMoves(), result, board);
+    }
+
+    /**
+     * Tag pairs in the order they were read.
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public List<String> getSanMoves() {
+        return sanMoves;
+    }
+
+    public int getPlyCount() {
+        return sanMoves.size();
+    }
+
+    /**
+     * "1-0", "0-1", "1/2-1/2" or "*" for an unfinished game.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * The position after the last move.
+     */
+    public Board getBoard() {
+        return board;
+    }
+}
@@ -0,0 +1,89 @@
+package eddy.chessfx.io;
+
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.logic.Move;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how many games per second {@link PgnReader} parses and replays from a PGN file.
+ * Without a file, games of random legal moves are written with {@link PgnWriter} to a
+ * temporary file first, and every game read back is checked against the one written.
+ * <p>
+ * Run with {@code java eddy.chessfx.io.PgnBenchmark [file.pgn | games=2000] [passes=3]}.
+ */
+public class PgnBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Path path;
+        List<List<String>> written = null;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            path = Path.of(args[0]);
+        } else {
+            int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+            path = Files.createTempFile("chessfx-benchmark", ".pgn");
+            path.toFile().deleteOnExit();
+            written = writeRandomGames(path, games);
+        }
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        for (int pass = 0; pass <= passes; pass++) {
+            long start = System.nanoTime();
+            long plies = 0;
+            int mismatches = 0;
+            try (PgnReader reader = PgnReader.open(path)) {
+                reader.setSkipInvalidGames(true);
+                while (reader.hasNext()) {
+                    Game game = reader.next();
+                    if (written != null && !game.getSanMoves().equals(written.get((int) reader.getGamesRead() - 1))) {
+                        mismatches++;
+                    }
+                    plies += game.getPlyCount();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%s: %d games, %d plies, %d skipped in %.3f s: %.0f games/s, %.0f plies/s, %.2f MB/s%n",
+                        pass == 0 ? "warm-up" : "pass " + pass, reader.getGamesRead(), plies, reader.getGamesSkipped(),
+                        seconds, reader.getGamesRead() / seconds, plies / seconds, reader.getBytesRead() / seconds / 1e6);
+                if (written != null && (mismatches > 0 || reader.getGamesRead() != written.size())) {
+                    System.out.println("Round trip failed: " + mismatches + " games differ");
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    private static List<List<String>> writeRandomGames(Path path, int games) throws IOException {
+        List<List<String>> written = new ArrayList<>(games);
+        Random random = new Random(1);
+        try (PgnWriter writer = PgnWriter.create(path)) {
+            for (int i = 0; i < games; i++) {
+                Board board = new Board();
+                String result = "*";
+                for (int ply = 0; ply < 120; ply++) {
+                    List<Move> moves = board.getLegalMoves();
+                    if (moves.isEmpty()) {
+                        boolean mated = board.isKingInCheck(board.isWhiteTurn());
+                        result = !mated ? "1/2-1/2" : board.isWhiteTurn() ? "0-1" : "1-0";
+                        break;
+                    }
+                    board.makeMove(moves.get(random.nextInt(moves.size())));
+                }
+                Map<String, String> tags = new LinkedHashMap<>();
+                tags.put("Event", "Random game");
+                tags.put("Round", String.valueOf(i + 1));
+                Game game = Game.fromBoard(board, tags, result);
+                writer.write(game);
+                written.add(game.getSanMoves());
+            }
+        }
+        System.out.printf("Wrote %d random games to %s (%d bytes)%n", games, path, Files.size(path));
+        return written;
+    }
+}
@@ -0,0 +1,363 @@
+package eddy.chessfx.io;
+
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.logic.Move;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the games of a PGN file one at a time, replaying every move on a {@link Board}.
+ * <p>
+ * The channel is read through one fixed buffer and only the game being parsed is kept, so
+ * memory stays bounded however large the file is. Comments, variations, NAGs and escape lines
+ * are skipped. A game with a move that does not resolve to a legal move throws an
+ * {@link IllegalArgumentException} from {@link #next()} after the game has been consumed, or
+ * is left out when {@link #setSkipInvalidGames(boolean)} is set.
+ */
+public class PgnReader implements Iterator<Game>, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    private final StringBuilder token = new StringBuilder(16);
+    private byte[] text = new byte[256];  // Tag value being read, decoded as UTF-8 once complete
+
+    private boolean skipInvalidGames;
+    private Game next;
+    private String error;  // Why the last game could not be replayed
+    private long gamesRead;
+    private long gamesSkipped;
+    private long bytesRead;
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public static PgnReader open(Path path) throws IOException {
+        return new PgnReader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    /**
+     * The games of the file at {@code path}; closing the stream closes the file.
+     */
+    public static Stream<Game> games(Path path) throws IOException {
+        return open(path).stream();
+    }
+
+    /**
+     * The remaining games as a sequential stream that closes this reader when closed.
+     */
+    public Stream<Game> stream() {
+        Spliterator<Game> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public void setSkipInvalidGames(boolean skipInvalidGames) {
+        this.skipInvalidGames = skipInvalidGames;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readGame();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Game next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Game game = next;
+        next = null;
+        return game;
+    }
+
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    public long getGamesSkipped() {
+        return gamesSkipped;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Game readGame() throws IOException {
+        while (true) {
+            Map<String, String> tags = new LinkedHashMap<>();
+            List<String> sanMoves = new ArrayList<>();
+            Board board = null;
+            String result = null;
+            boolean inMovetext = false;
+            error = null;
+
+            while (result == null) {
+                int c = skipWhitespace();
+                if (c == -1) {
+                    break;
+                }
+                if (c == '[') {
+                    if (inMovetext) {
+                        break;  // The next game starts without this one giving a result
+                    }
+                    position++;
+                    readTag(tags);
+                    continue;
+                }
+                position++;
+                switch (c) {
+                    case '{' -> skipPast('}');
+                    case ';', '%' -> skipPast('\n');
+                    case '(' -> skipVariation();
+                    case ')' -> {
+                    }
+                    case '$' -> readToken(c);
+                    default -> {
+                        String san = readMove(c);
+                        if (san == null) {
+                            break;
+                        }
+                        inMovetext = true;
+                        if (isResult(san)) {
+                            result = san;
+                            break;
+                        }
+                        if (board == null) {
+                            board = startPosition(tags);
+                        }
+                        if (error == null) {
+                            play(board, san, sanMoves);
+                        }
+                    }
+                }
+            }
+
+            if (tags.isEmpty() && !inMovetext) {
+                return null;  // Only whitespace or comments were left
+            }
+            if (board == null) {
+                board = startPosition(tags);
+            }
+            if (error != null) {
+                gamesSkipped++;
+                if (skipInvalidGames) {
+                    continue;
+                }
+                throw new IllegalArgumentException("Game " + (gamesRead + gamesSkipped) + ": " + error);
+            }
+            if (result == null) {
+                result = tags.getOrDefault("Result", "*");
+            }
+            gamesRead++;
+            return new Game(tags, sanMoves, result, board);
+        }
+    }
+
+    private Board startPosition(Map<String, String> tags) {
+        String fen = tags.get("FEN");
+        if (fen != null) {
+            try {
+                return Board.fromFen(fen);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+        }
+        return new Board();
+    }
+
+    private void play(Board board, String san, List<String> sanMoves) {
+        Move move = board.findMoveBySan(san);
+        if (move == null || !board.makeMove(move)) {
+            error = "illegal move " + san + " at ply " + (sanMoves.size() + 1);
+            return;
+        }
+        sanMoves.add(san);
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    // Reads one movetext token, dropping a leading move number such as "12." or "12..." and
+    // trailing annotations such as "!?"; returns null if nothing else was left
+    private String readMove(int first) throws IOException {
+        readToken(first);
+        int start = 0;
+        int end = token.length();
+        while (start < end && Character.isDigit(token.charAt(start))) {
+            start++;
+        }
+        if (start < end && token.charAt(start) == '.') {
+            while (start < end && token.charAt(start) == '.') {
+                start++;
+            }
+        } else {
+            start = 0;  // Not a move number, e.g. the result "1-0"
+        }
+        while (end > start && (token.charAt(end - 1) == '!' || token.charAt(end - 1) == '?')) {
+            end--;
+        }
+        return start == end ? null : token.substring(start, end);
+    }
+
+    private void readToken(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        while (true) {
+            int c = peek();
+            if (c <= ' ' || c >= 0x80 || c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ']'
+                    || c == ';' || c == '$') {
+                return;
+            }
+            token.append((char) c);
+            position++;
+        }
+    }
+
+    // Reads the name, quoted value and closing bracket of a tag pair
+    private void readTag(Map<String, String> tags) throws IOException {
+        int c = skipWhitespace();
+        token.setLength(0);
+        while (c > ' ' && c != '"' && c != ']') {
+            token.append((char) c);
+            position++;
+            c = peek();
+        }
+        String name = token.toString();
+        while (c != '"' && c != ']' && c != -1) {
+            position++;
+            c = peek();
+        }
+        int length = 0;
+        if (c == '"') {
+            position++;
+            while ((c = read()) != -1 && c != '"') {
+                if (c == '\\') {
+                    c = read();
+                    if (c == -1) {
+                        break;
+                    }
+                }
+                if (length == text.length) {
+                    text = Arrays.copyOf(text, length * 2);
+                }
+                text[length++] = (byte) c;
+            }
+        }
+        skipPast(']');
+        if (!name.isEmpty()) {
+            tags.put(name, new String(text, 0, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int c = read();
+            switch (c) {
+                case -1 -> {
+                    return;
+                }
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '{' -> skipPast('}');
+                case ';' -> skipPast('\n');
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void skipPast(int end) throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != end && c != -1);
+    }
+
+    // Skips whitespace and any non-ASCII byte such as a byte order mark, and returns the next
+    // byte without consuming it
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != -1 && (c <= ' ' || c >= 0x80)) {
+            position++;
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return bytes[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        buffer.clear();
+        int count;
+        do {
+            count = channel.read(buffer);
+        } while (count == 0);
+        if (count < 0) {
+            endOfInput = true;
+            return false;
+        }
+        position = 0;
+        limit = count;
+        bytesRead += count;
+        return true;
+    }
+}
@@ -0,0 +1,116 @@
+package eddy.chessfx.io;
+
+import eddy.chessfx.logic.Board;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games in PGN export format: the Seven Tag Roster first, then any other tags, then
+ * the movetext wrapped below 80 columns and ended by the result.
+ */
+public class PgnWriter implements Closeable, Flushable {
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final int LINE_LENGTH = 79;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+
+    public PgnWriter(WritableByteChannel channel) {
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    public static PgnWriter create(Path path) throws IOException {
+        return new PgnWriter(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE));
+    }
+
+    public void write(Game game) throws IOException {
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = name.equals("Result") ? game.getResult() : game.getTag(name);
+            if (value == null) {
+                value = name.equals("Date") ? "????.??.??" : "?";
+            }
+            writeTag(name, value);
+        }
+        for (Map.Entry<String, String> tag : game.getTags().entrySet()) {
+            if (!isRosterTag(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        writer.write('\n');
+
+        // A game set up from a FEN may start with black and at a later move number
+        String fen = game.getTag("FEN");
+        Board start = fen == null ? null : Board.fromFen(fen);
+        int moveNumber = start == null ? 1 : start.getFullmoveNumber();
+        boolean whiteTurn = start == null || start.isWhiteTurn();
+
+        List<String> sanMoves = game.getSanMoves();
+        line.setLength(0);
+        for (int i = 0; i < sanMoves.size(); i++) {
+            if (whiteTurn) {
+                appendWord(moveNumber + ".");
+            } else if (i == 0) {
+                appendWord(moveNumber + "...");
+            }
+            appendWord(sanMoves.get(i));
+            if (!whiteTurn) {
+                moveNumber++;
+            }
+            whiteTurn = !whiteTurn;
+        }
+        appendWord(game.getResult());
+        writer.append(line).write("\n\n");
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        writer.write('[');
+        writer.write(name);
+        writer.write(" \"");
+        writer.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        writer.write("\"]\n");
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String rosterTag : SEVEN_TAG_ROSTER) {
+            if (rosterTag.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendWord(String word) throws IOException {
+        if (!line.isEmpty() && line.length() + 1 + word.length() > LINE_LENGTH) {
+            writer.append(line).write('\n');
+            line.setLength(0);
+        }
+        if (!line.isEmpty()) {
+            line.append(' ');
+        }
+        line.append(word);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
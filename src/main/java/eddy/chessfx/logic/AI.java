@@ -2,193 +2,311 @@ package eddy.chessfx.logic;
 
 import eddy.chessfx.pieces.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AI {
 
-    private static final int MAX_DEPTH = 2;  // Ustaw mniejszą głębokość, np. 2 lub 3
-    private static final int CHECKMATE_VALUE = 1000000;
+    private static final long DEFAULT_MOVE_TIME_MS = 1000;  // Time budget of findBestMove(Board, boolean)
+    static final int CHECKMATE_VALUE = 1000000;
+    static final int MATE_THRESHOLD = CHECKMATE_VALUE - 1000;  // Scores beyond this are mates in some number of plies
+    static final int INFINITY = CHECKMATE_VALUE + 1;
+    private static final int DEFAULT_HASH_MB = 16;
+    private static boolean useTranspositionTable = true;
+    private static final TranspositionTable transpositionTable = new TranspositionTable(DEFAULT_HASH_MB);
+    private static boolean verbose = true;  // Print every move found with its statistics
+
+    // Lazy SMP: the calling thread searches as thread 0, the helpers run on this pool
+    private static int threads = 1;
+    private static ExecutorService helperPool;
+
+    // Statistics of the last search
+    private static long nodes;
+    private static long quiescenceNodes;
+    private static long betaCutoffs;
+    private static long firstMoveCutoffs;
+    private static int completedDepth;
+    private static long searchNanos;
+    private static long[] depthNanos = new long[0];
+
+    public static void setHashSizeMb(int sizeMb) {
+        transpositionTable.resize(sizeMb);
+    }
+
+    public static void setVerbose(boolean verbose) {
+        AI.verbose = verbose;
+    }
+
+    public static void setUseTranspositionTable(boolean useTranspositionTable) {
+        AI.useTranspositionTable = useTranspositionTable;
+    }
+
+    public static TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * Sets the number of threads searching each position, the calling thread included.
+     */
+    public static synchronized void setThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads == AI.threads) {
+            return;
+        }
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
+        AI.threads = threads;
+        if (threads > 1) {
+            AtomicInteger helperIndex = new AtomicInteger(1);
+            helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "search-helper-" + helperIndex.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public static int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Nodes visited by the last search, main search and quiescence, summed over all threads.
+     */
+    public static long getLastSearchNodes() {
+        return nodes + quiescenceNodes;
+    }
+
+    /**
+     * The part of {@link #getLastSearchNodes()} visited by the quiescence search.
+     */
+    public static long getLastSearchQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    /**
+     * Share of the beta cutoffs in the last search that the first move searched caused; the
+     * closer to 1, the better the move ordering.
+     */
+    public static double getLastSearchFirstMoveCutoffRate() {
+        return betaCutoffs == 0 ? 0 : (double) firstMoveCutoffs / betaCutoffs;
+    }
+
+    public static int getLastSearchDepth() {
+        return completedDepth;
+    }
+
+    public static long getLastSearchNanos() {
+        return searchNanos;
+    }
+
+    public static long getLastSearchNodesPerSecond() {
+        return getLastSearchNodes() * 1_000_000_000L / Math.max(1, searchNanos);
+    }
+
+    /**
+     * Nanoseconds from the start of the last search until any thread completed {@code depth},
+     * or -1 if no thread did.
+     */
+    public static long getLastSearchTimeToDepth(int depth) {
+        return depth > 0 && depth < depthNanos.length ? depthNanos[depth] : -1;
+    }
 
     public static Move findBestMove(Board board, boolean isWhite) {
+        return findBestMove(board, isWhite, SearchLimits.time(DEFAULT_MOVE_TIME_MS));
+    }
+
+    public static Move findBestMove(Board board, boolean isWhite, int depth) {
+        return findBestMove(board, isWhite, SearchLimits.depth(depth));
+    }
+
+    /**
+     * Searches with iterative deepening until {@code limits} are reached and returns the best
+     * move of the deepest completed iteration. The first iteration always completes. Returns
+     * null if the side to move has no legal move, i.e. the game is over.
+     */
+    public static synchronized Move findBestMove(Board board, boolean isWhite, SearchLimits limits) {
         long timeStart = System.currentTimeMillis();
-        Move aiMove = alphaBeta(board, MAX_DEPTH, Integer.MIN_VALUE, Integer.MAX_VALUE, isWhite, isWhite).move;
+        long startNanos = System.nanoTime();
+        Move aiMove = findBestMoveOnBoard(board, isWhite, limits, timeStart, startNanos);
+        searchNanos = System.nanoTime() - startNanos;
         long timeEnd = System.currentTimeMillis();
-        System.out.println("AI's move: " + aiMove.getPieceMoved().getClass().getSimpleName() + " from "
-                + aiMove.getStartX() + ", " + aiMove.getStartY() + " to " + aiMove.getEndX() + ", " + aiMove.getEndY() + " in " + (timeEnd - timeStart) + " ms");
+        if (verbose && aiMove == null) {
+            System.out.println("AI has no legal move");
+        } else if (verbose) {
+            System.out.println("AI's move: " + aiMove.getPieceMoved().getClass().getSimpleName() + " from "
+                    + aiMove.getStartX() + ", " + aiMove.getStartY() + " to " + aiMove.getEndX() + ", " + aiMove.getEndY() + " in " + (timeEnd - timeStart) + " ms"
+                    + " (depth " + completedDepth + ", " + nodes + " nodes + " + quiescenceNodes + " quiescence, "
+                    + String.format("%.1f%% first-move cutoffs, ", 100 * getLastSearchFirstMoveCutoffRate()) + getLastSearchNodesPerSecond() + " nps, "
+                    + threads + " threads)");
+        }
         return aiMove;
     }
 
-    private static MoveEvaluation alphaBeta(Board board, int depth, int alpha, int beta, boolean maximizingPlayer, boolean isWhite) {
-        if (depth == 0 || board.isCheckmate(!isWhite) || board.isCheckmate(isWhite)) {
-            return new MoveEvaluation(evaluateBoard(board, isWhite), null);
-        }
+    private static Move findBestMoveOnBoard(Board board, boolean isWhite, SearchLimits limits, long timeStart, long startNanos) {
+        // Scores are stored for the side to move, so entries stay valid whichever side searches
+        transpositionTable.newSearch();
+        TranspositionTable table = useTranspositionTable ? transpositionTable : null;
 
-        List<Move> moves = getAllPossibleMoves(board, maximizingPlayer);
-        Move bestMove = null;
-
-        if (maximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
-            for (Move move : moves) {
-                Board tempBoard = new Board(board);
-                tempBoard.makeMove(move);
-                int eval = alphaBeta(tempBoard, depth - 1, alpha, beta, false, isWhite).evaluation;
-                if (eval > maxEval) {
-                    maxEval = eval;
-                    bestMove = move;
-                }
-                alpha = Math.max(alpha, eval);
-                if (beta <= alpha) {
-                    break;
-                }
+        // Every thread makes and unmakes moves on its own copy; the copies are taken here so
+        // the helpers never read the caller's board
+        AtomicBoolean helperStop = new AtomicBoolean();
+        Search[] searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(new Board(board), isWhite, limits, table, helperStop, i, timeStart, startNanos);
+        }
+        // Read while the helpers run, so the count is only as exact as a progress report needs
+        searches[0].setNodeCounter(() -> {
+            long total = 0;
+            for (Search search : searches) {
+                total += search.getNodes() + search.getQuiescenceNodes();
             }
-            return new MoveEvaluation(maxEval, bestMove);
-        } else {
-            int minEval = Integer.MAX_VALUE;
-            for (Move move : moves) {
-                Board tempBoard = new Board(board);
-                tempBoard.makeMove(move);
-                int eval = alphaBeta(tempBoard, depth - 1, alpha, beta, true, isWhite).evaluation;
-                if (eval < minEval) {
-                    minEval = eval;
-                    bestMove = move;
-                }
-                beta = Math.min(beta, eval);
-                if (beta <= alpha) {
-                    break;
-                }
+            return total;
+        });
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            helpers.add(helperPool.submit(searches[i]::run));
+        }
+        searches[0].run();
+        helperStop.set(true);
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+        collectStatistics(searches);
+
+        // A helper that completed a deeper iteration than the main thread has the better move
+        Search best = searches[0];
+        for (Search search : searches) {
+            if (search.getCompletedDepth() > best.getCompletedDepth() && search.getBestMove() != 0) {
+                best = search;
             }
-            return new MoveEvaluation(minEval, bestMove);
         }
+        return best.getBestMove() == 0 ? null : board.toMove(best.getBestMove());
     }
 
-    private static List<Move> getAllPossibleMoves(Board board, boolean isWhite) {
-        List<Move> captureMoves = new ArrayList<>();
-        List<Move> nonCaptureMoves = new ArrayList<>();
-        for (int x = 0; x < 8; x++) {
-            for (int y = 0; y < 8; y++) {
-                Piece piece = board.getPiece(x, y);
-                if (piece != null && piece.isWhite() == isWhite) {
-                    for (Move move : piece.getPossibleMoves(board, x, y)) {
-                        if (move.getPieceCaptured() != null) {
-                            captureMoves.add(move);
-                        } else {
-                            nonCaptureMoves.add(move);
-                        }
-                    }
+    private static void collectStatistics(Search[] searches) {
+        nodes = 0;
+        quiescenceNodes = 0;
+        betaCutoffs = 0;
+        firstMoveCutoffs = 0;
+        completedDepth = 0;
+        depthNanos = new long[SearchLimits.MAX_DEPTH + 1];
+        Arrays.fill(depthNanos, -1);
+        for (Search search : searches) {
+            search.flushStatistics();
+            nodes += search.getNodes();
+            quiescenceNodes += search.getQuiescenceNodes();
+            betaCutoffs += search.getBetaCutoffs();
+            firstMoveCutoffs += search.getFirstMoveCutoffs();
+            completedDepth = Math.max(completedDepth, search.getCompletedDepth());
+            for (int depth = 1; depth <= search.getCompletedDepth(); depth++) {
+                long time = search.getDepthNanos(depth);
+                if (time >= 0 && (depthNanos[depth] < 0 || time < depthNanos[depth])) {
+                    depthNanos[depth] = time;
                 }
             }
         }
-        // Najpierw zwracamy ruchy bijące, potem pozostałe ruchy
-        captureMoves.addAll(nonCaptureMoves);
-        return captureMoves;
     }
 
-    private static int evaluateBoard(Board board, boolean isWhite) {
-        if (board.isCheckmate(!isWhite)) {
-            return CHECKMATE_VALUE;  // Checkmate in favor of the current player
-        }
-        if (board.isCheckmate(isWhite)) {
-            return -CHECKMATE_VALUE;  // Checkmate against the current player
-        }
+    // Static evaluation only; checkmate and stalemate are found by the search from the move list
+    static int evaluateBoard(Board board, boolean isWhite) {
+        return Evaluation.evaluate(board, isWhite);
+    }
 
-        int evaluation = 0;
+    /**
+     * Reference for {@link Evaluation}: rescans the board for every term with the current
+     * {@link EvaluationParams}. Every term is counted for both colours from white's side, the
+     * result is from the side of {@code isWhite}.
+     */
+    static int evaluateBoardReference(Board board, boolean isWhite) {
+        EvaluationParams params = Evaluation.currentParams();
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
         for (int x = 0; x < 8; x++) {
             for (int y = 0; y < 8; y++) {
                 Piece piece = board.getPiece(x, y);
                 if (piece != null) {
-                    evaluation += pieceValue(piece);
-                    evaluation += positionValue(piece, x, y);
+                    int type = pieceIndex(piece);
+                    int index = piece.isWhite() ? 63 - (y * 8 + x) : y * 8 + x;
+                    int value = params.middlegameValues[type] + params.middlegameTables[type][index];
+                    middlegame += piece.isWhite() ? value : -value;
+                    value = params.endgameValues[type] + params.endgameTables[type][index];
+                    endgame += piece.isWhite() ? value : -value;
+                    phase += params.phaseWeights[type];
                 }
             }
         }
-        evaluation += controlCenter(board, isWhite);
-        evaluation += development(board, isWhite);
-        evaluation += kingSafety(board, isWhite);
+        middlegame += controlCenter(board, params.centerBonus);
+        middlegame += development(board, params.developmentBonus);
+        middlegame += kingSafety(board, params.kingShelterBonus);
+        int evaluation = Evaluation.taper(middlegame, endgame, phase, Evaluation.totalPhase(params.phaseWeights));
         return isWhite ? evaluation : -evaluation;
     }
 
-    private static int controlCenter(Board board, boolean isWhite) {
+    private static int controlCenter(Board board, int bonus) {
         // Heurystyka kontroli centrum planszy
         int control = 0;
         int[][] centerSquares = {{3, 3}, {3, 4}, {4, 3}, {4, 4}};
         for (int[] square : centerSquares) {
             Piece piece = board.getPiece(square[0], square[1]);
             if (piece != null) {
-                control += piece.isWhite() == isWhite ? 10 : -10;
+                control += piece.isWhite() ? bonus : -bonus;
             }
         }
         return control;
     }
 
-    private static int development(Board board, boolean isWhite) {
+    private static int development(Board board, int bonus) {
         // Heurystyka rozwoju figur (na początku gry bardziej wartościowe są figury w grze)
         int development = 0;
         for (int x = 0; x < 8; x++) {
             for (int y = 0; y < 8; y++) {
                 Piece piece = board.getPiece(x, y);
-                if (piece != null && piece.isWhite() == isWhite) {
-                    if (piece instanceof Knight || piece instanceof Bishop) {
-                        development += 5;
-                    }
+                if (piece instanceof Knight || piece instanceof Bishop) {
+                    development += piece.isWhite() ? bonus : -bonus;
                 }
             }
         }
         return development;
     }
 
-    private static int kingSafety(Board board, boolean isWhite) {
+    private static int kingSafety(Board board, int bonus) {
         // Heurystyka bezpieczeństwa króla
         int safety = 0;
         for (int x = 0; x < 8; x++) {
             for (int y = 0; y < 8; y++) {
                 Piece piece = board.getPiece(x, y);
-                if (piece instanceof King && piece.isWhite() == isWhite) {
-                    safety += (x > 1 && x < 6) ? -20 : 20;  // Król bezpieczniejszy, gdy jest w rogu
+                if (piece instanceof King) {
+                    int value = (x > 1 && x < 6) ? -bonus : bonus;  // Król bezpieczniejszy, gdy jest w rogu
+                    safety += piece.isWhite() ? value : -value;
                 }
             }
         }
         return safety;
     }
 
-    private static int pieceValue(Piece piece) {
-        if (piece instanceof Pawn) return 100;
-        if (piece instanceof Knight || piece instanceof Bishop) return 300;
-        if (piece instanceof Rook) return 500;
-        if (piece instanceof Queen) return 900;
-        if (piece instanceof King) return 10000;
-        return 0;
-    }
-
-    private static int positionValue(Piece piece, int x, int y) {
-        int index = y * 8 + x;
-        if (piece instanceof Pawn) {
-            return piece.isWhite() ? BoardValues.PAWN[63 - index] : BoardValues.PAWN[index];
-        }
-        if (piece instanceof Knight) {
-            return piece.isWhite() ? BoardValues.KNIGHT[63 - index] : BoardValues.KNIGHT[index];
-        }
-        if (piece instanceof Bishop) {
-            return piece.isWhite() ? BoardValues.BISHOP[63 - index] : BoardValues.BISHOP[index];
-        }
-        if (piece instanceof Rook) {
-            return piece.isWhite() ? BoardValues.ROOK[63 - index] : BoardValues.ROOK[index];
-        }
-        if (piece instanceof Queen) {
-            return piece.isWhite() ? BoardValues.QUEEN[63 - index] : BoardValues.QUEEN[index];
-        }
-        if (piece instanceof King) {
-            return piece.isWhite() ? BoardValues.KING[63 - index] : BoardValues.KING[index];
-        }
-        return 0;
-    }
-
-    private static class MoveEvaluation {
-        int evaluation;
-        Move move;
-
-        MoveEvaluation(int evaluation, Move move) {
-            this.evaluation = evaluation;
-            this.move = move;
-        }
+    // Index into the EvaluationParams arrays
+    private static int pieceIndex(Piece piece) {
+        if (piece instanceof Pawn) return 0;
+        if (piece instanceof Knight) return 1;
+        if (piece instanceof Bishop) return 2;
+        if (piece instanceof Rook) return 3;
+        if (piece instanceof Queen) return 4;
+        return 5;
     }
 }
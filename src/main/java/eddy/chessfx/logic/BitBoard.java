@@ -0,0 +1,637 @@
+package eddy.chessfx.logic;
+
+import eddy.chessfx.pieces.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bitboard position: one {@code long} per piece kind and colour plus a mailbox for fast
+ * piece lookups. Squares use the same layout as {@link Board}: {@code square = y * 8 + x},
+ * so square 0 is a8 and square 63 is h1. Moves are packed into an {@code int} (see
+ * {@link #encodeMove}) and written into caller-supplied buffers, so generating moves
+ * allocates nothing.
+ * <p>
+ * BitBoard generates moves only: the board highlights its legal moves with it when run with
+ * {@code -Dchessfx.bitboard=true}, and the perft tests check it against {@link Board}. The AI
+ * searches on {@link Board}, which keeps the hash key, history and incremental evaluation
+ * the search needs.
+ */
+public class BitBoard {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int NO_PIECE = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    // Move layout: bits 0-5 from, 6-11 to, 12-14 promotion piece type (0 = none), 15-18 flags
+    public static final int FLAG_CAPTURE = 1 << 15;
+    public static final int FLAG_DOUBLE_PUSH = 1 << 16;
+    public static final int FLAG_EN_PASSANT = 1 << 17;
+    public static final int FLAG_CASTLING = 1 << 18;
+
+    public static final int MAX_MOVES = 256;  // Upper bound of moves in a single position
+    private static final int MAX_PLY = 1024;
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] BISHOP_MASKS = new long[64];
+    // Magic multipliers for this square layout, found once with a fixed-seed random search
+    private static final long[] ROOK_MAGICS = {
+            0x2080002080400010L, 0x00C0002001401000L, 0x2100110008402002L, 0x0880080081041000L,
+            0x0200020020041008L, 0x2300040008010012L, 0x0C00283004008201L, 0x0180010000407A80L,
+            0x0168800080400020L, 0x0010400040201000L, 0x1001002001001048L, 0x1001002408100100L,
+            0x0801000408010012L, 0x4001000209000400L, 0x08A20004C8020001L, 0x2002801145002280L,
+            0x0080860021004200L, 0x001000C009402002L, 0x00B0002004002800L, 0x100A808010020800L,
+            0x9400808004000800L, 0x0090808004000200L, 0x0000040010810208L, 0x2000020000448534L,
+            0x4104400480008033L, 0x0000810100204000L, 0x0440430900200010L, 0x4600240900100100L,
+            0x0804080100110004L, 0x0001000300080400L, 0x0004084400011002L, 0x0023040200008041L,
+            0x0580050043002080L, 0x0400804002802008L, 0x0001002001004010L, 0x0080200A02001040L,
+            0x600D480280802400L, 0x400B800201800C00L, 0x2408211004004208L, 0x0200211082000844L,
+            0x0020804010208000L, 0x5030004020104000L, 0xA042084080220010L, 0x4088080010008080L,
+            0x5002080100110004L, 0x2012002010040400L, 0x0040318210440008L, 0x0120941040820001L,
+            0x1000800100402100L, 0x0040002010004840L, 0x8108450020001900L, 0x0200204008120200L,
+            0x0080800C00180180L, 0x0885000400420900L, 0x230802011008C400L, 0x3801740891432200L,
+            0x0A00250212024082L, 0x0000882040001105L, 0x0042102082000A42L, 0xC401210810000501L,
+            0x0241001002480005L, 0x0081000400880241L, 0x0000009008024124L, 0x0048122980410402L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x1862221006220044L, 0x2104A14202020060L, 0x2804081220444001L, 0x2102408900010001L,
+            0x0002021000040002L, 0x08C3100805004300L, 0x1084040124920050L, 0x8900440043382010L,
+            0x2401410802140040L, 0x0901200454208020L, 0x0000090216020541L, 0x1283844040800804L,
+            0x0521840420000803L, 0x0800010402400C40L, 0x0000408E10100404L, 0x0009810048420800L,
+            0x2004211004286808L, 0x13080A1001380080L, 0x0008801004220020L, 0x0024000802480800L,
+            0x1461001190400401L, 0x0020400200500440L, 0x0003000409019000L, 0x000C20820D011802L,
+            0x000804002164100CL, 0x00048400A0011404L, 0x5018110308044100L, 0x0048A00804010020L,
+            0x0007840000802000L, 0x8808A20075004220L, 0x8014040000822100L, 0x110C03000E251101L,
+            0x0081094820202010L, 0x0008041000044100L, 0x00C1202808940800L, 0x8108100821040400L,
+            0x1240010010010041L, 0x0810004080011000L, 0x00A20C0401804A00L, 0x40014C0020050500L,
+            0x5805082012042480L, 0x2004022144031000L, 0x2082002024204808L, 0x0800004200800800L,
+            0x0410020204100A02L, 0x80C1204080804101L, 0x0010104E01800042L, 0x000800810C400208L,
+            0x100080B008201210L, 0x8000440605112101L, 0x000202008C440040L, 0x9004002210442200L,
+            0x2032014088222045L, 0x0C00202222C20000L, 0x0140040820A50100L, 0x0222104C29024018L,
+            0x0200110121202004L, 0x0800104200B00802L, 0x0000401424020801L, 0x4000000004208840L,
+            0x0802E00040104100L, 0x03000020A0424080L, 0x0011C00408188121L, 0x0848020822040013L
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] ROOK_ATTACKS = new long[64][];
+    private static final long[][] BISHOP_ATTACKS = new long[64][];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    // Castling rights kept after a move touches a square (king or rook home squares clear rights)
+    private static final int[] CASTLING_MASK = new int[64];
+
+    private static final long ROW_2 = 0xFFL << 16;  // Black pawns land here after a single push
+    private static final long ROW_5 = 0xFFL << 40;  // White pawns land here after a single push
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int x = square & 7;
+            int y = square >>> 3;
+            KNIGHT_ATTACKS[square] = stepAttacks(x, y, new int[][]{{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}});
+            KING_ATTACKS[square] = stepAttacks(x, y, new int[][]{{1, 0}, {0, 1}, {-1, 0}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
+            PAWN_ATTACKS[WHITE][square] = stepAttacks(x, y, new int[][]{{-1, -1}, {1, -1}});
+            PAWN_ATTACKS[BLACK][square] = stepAttacks(x, y, new int[][]{{-1, 1}, {1, 1}});
+            CASTLING_MASK[square] = 0xF;
+        }
+        CASTLING_MASK[0] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[7] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[4] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[56] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[63] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[60] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+
+        for (int square = 0; square < 64; square++) {
+            initMagic(square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS[square], ROOK_SHIFTS, ROOK_ATTACKS);
+            initMagic(square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS[square], BISHOP_SHIFTS, BISHOP_ATTACKS);
+        }
+    }
+
+    private final long[] pieces = new long[12];  // Indexed by colour * 6 + piece type
+    private final long[] occupancy = new long[2];
+    private final int[] mailbox = new int[64];  // Piece index on each square or NO_PIECE
+    private int sideToMove;
+    private int castlingRights;
+    private int epSquare = -1;  // Square a pawn may capture en passant onto, -1 if none
+    private int halfmoveClock;
+    private final int[] undoStack = new int[MAX_PLY];
+    private int ply;
+
+    public BitBoard() {
+        Arrays.fill(mailbox, NO_PIECE);
+    }
+
+    public BitBoard(BitBoard other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+    }
+
+    public static BitBoard fromBoard(Board board) {
+        BitBoard bitBoard = new BitBoard();
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board.getPiece(x, y);
+                if (piece != null) {
+                    bitBoard.addPiece(pieceIndex(piece.isWhite() ? WHITE : BLACK, pieceType(piece)), y * 8 + x);
+                }
+            }
+        }
+        bitBoard.sideToMove = board.isWhiteTurn() ? WHITE : BLACK;
+        bitBoard.castlingRights = board.getCastlingRights();
+        bitBoard.epSquare = board.getEnPassantSquare();
+        return bitBoard;
+    }
+
+    public static int pieceType(Piece piece) {
+        return switch (piece) {
+            case Pawn ignored -> PAWN;
+            case Knight ignored -> KNIGHT;
+            case Bishop ignored -> BISHOP;
+            case Rook ignored -> ROOK;
+            case Queen ignored -> QUEEN;
+            case King ignored -> KING;
+            default -> NO_PIECE;
+        };
+    }
+
+    public static Piece createPiece(int type, boolean isWhite) {
+        return switch (type) {
+            case PAWN -> new Pawn(isWhite);
+            case KNIGHT -> new Knight(isWhite);
+            case BISHOP -> new Bishop(isWhite);
+            case ROOK -> new Rook(isWhite);
+            case QUEEN -> new Queen(isWhite);
+            case KING -> new King(isWhite);
+            default -> null;
+        };
+    }
+
+    private static int pieceIndex(int color, int type) {
+        return color * 6 + type;
+    }
+
+    // Move encoding
+
+    public static int encodeMove(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | flags;
+    }
+
+    public static int moveFrom(int move) {
+        return move & 0x3F;
+    }
+
+    public static int moveTo(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int movePromotion(int move) {
+        return (move >>> 12) & 0x7;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & FLAG_CAPTURE) != 0;
+    }
+
+    /**
+     * The move in coordinate notation as read by {@link Board#findMove(String)}, e.g. "e2e4"
+     * or "e7e8q".
+     */
+    public static String toCoordinates(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        StringBuilder coordinates = new StringBuilder(5)
+                .append((char) ('a' + (from & 7))).append((char) ('8' - (from >>> 3)))
+                .append((char) ('a' + (to & 7))).append((char) ('8' - (to >>> 3)));
+        if (movePromotion(move) != 0) {
+            coordinates.append(" nbrq".charAt(movePromotion(move)));
+        }
+        return coordinates.toString();
+    }
+
+    // Accessors
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public boolean isWhiteTurn() {
+        return sideToMove == WHITE;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEpSquare() {
+        return epSquare;
+    }
+
+    public long getPieces(int color, int type) {
+        return pieces[pieceIndex(color, type)];
+    }
+
+    public long getOccupancy(int color) {
+        return occupancy[color];
+    }
+
+    public int getPieceType(int square) {
+        int piece = mailbox[square];
+        return piece == NO_PIECE ? NO_PIECE : piece % 6;
+    }
+
+    public int getPieceColor(int square) {
+        int piece = mailbox[square];
+        return piece == NO_PIECE ? NO_PIECE : piece / 6;
+    }
+
+    // Attacks
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    public static long pawnAttacks(int color, int square) {
+        return PAWN_ATTACKS[color][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_ATTACKS[square][(int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_ATTACKS[square][(int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public boolean isSquareAttacked(int square, int byColor) {
+        long occupied = occupancy[WHITE] | occupancy[BLACK];
+        int base = byColor * 6;
+        if ((PAWN_ATTACKS[byColor ^ 1][square] & pieces[base + PAWN]) != 0) return true;
+        if ((KNIGHT_ATTACKS[square] & pieces[base + KNIGHT]) != 0) return true;
+        if ((KING_ATTACKS[square] & pieces[base + KING]) != 0) return true;
+        long queens = pieces[base + QUEEN];
+        if ((bishopAttacks(square, occupied) & (pieces[base + BISHOP] | queens)) != 0) return true;
+        return (rookAttacks(square, occupied) & (pieces[base + ROOK] | queens)) != 0;
+    }
+
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[pieceIndex(color, KING)]);
+    }
+
+    public boolean isKingInCheck(int color) {
+        return isSquareAttacked(kingSquare(color), color ^ 1);
+    }
+
+    // Move generation
+
+    /**
+     * Writes all pseudo-legal moves of the side to move into {@code moves} starting at
+     * {@code start}; returns the index after the last written move.
+     */
+    public int generatePseudoLegalMoves(int[] moves, int start) {
+        int n = start;
+        int us = sideToMove;
+        int them = us ^ 1;
+        long own = occupancy[us];
+        long enemy = occupancy[them];
+        long occupied = own | enemy;
+        long empty = ~occupied;
+        int base = us * 6;
+
+        // Pawn pushes
+        long pawns = pieces[base + PAWN];
+        long single;
+        long doubles;
+        int back;
+        if (us == WHITE) {
+            single = (pawns >>> 8) & empty;
+            doubles = ((single & ROW_5) >>> 8) & empty;
+            back = 8;
+        } else {
+            single = (pawns << 8) & empty;
+            doubles = ((single & ROW_2) << 8) & empty;
+            back = -8;
+        }
+        while (single != 0) {
+            int to = Long.numberOfTrailingZeros(single);
+            single &= single - 1;
+            n = addPawnMove(moves, n, to + back, to, 0);
+        }
+        while (doubles != 0) {
+            int to = Long.numberOfTrailingZeros(doubles);
+            doubles &= doubles - 1;
+            moves[n++] = encodeMove(to + 2 * back, to, 0, FLAG_DOUBLE_PUSH);
+        }
+
+        // Pawn captures
+        long attackers = pawns;
+        while (attackers != 0) {
+            int from = Long.numberOfTrailingZeros(attackers);
+            attackers &= attackers - 1;
+            long targets = PAWN_ATTACKS[us][from] & enemy;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                n = addPawnMove(moves, n, from, to, FLAG_CAPTURE);
+            }
+        }
+        if (epSquare != -1) {
+            long epAttackers = PAWN_ATTACKS[them][epSquare] & pawns;
+            while (epAttackers != 0) {
+                int from = Long.numberOfTrailingZeros(epAttackers);
+                epAttackers &= epAttackers - 1;
+                moves[n++] = encodeMove(from, epSquare, 0, FLAG_CAPTURE | FLAG_EN_PASSANT);
+            }
+        }
+
+        // Pieces
+        long bitboard = pieces[base + KNIGHT];
+        while (bitboard != 0) {
+            int from = Long.numberOfTrailingZeros(bitboard);
+            bitboard &= bitboard - 1;
+            n = addMoves(moves, n, from, KNIGHT_ATTACKS[from] & ~own, enemy);
+        }
+        bitboard = pieces[base + BISHOP] | pieces[base + QUEEN];
+        while (bitboard != 0) {
+            int from = Long.numberOfTrailingZeros(bitboard);
+            bitboard &= bitboard - 1;
+            n = addMoves(moves, n, from, bishopAttacks(from, occupied) & ~own, enemy);
+        }
+        bitboard = pieces[base + ROOK] | pieces[base + QUEEN];
+        while (bitboard != 0) {
+            int from = Long.numberOfTrailingZeros(bitboard);
+            bitboard &= bitboard - 1;
+            n = addMoves(moves, n, from, rookAttacks(from, occupied) & ~own, enemy);
+        }
+        int king = kingSquare(us);
+        n = addMoves(moves, n, king, KING_ATTACKS[king] & ~own, enemy);
+
+        // Castling: the king may not start in, pass through or land on an attacked square
+        if (us == WHITE) {
+            if ((castlingRights & WHITE_KINGSIDE) != 0 && (occupied & 0x6000000000000000L) == 0
+                    && !isSquareAttacked(60, them) && !isSquareAttacked(61, them)) {
+                moves[n++] = encodeMove(60, 62, 0, FLAG_CASTLING);
+            }
+            if ((castlingRights & WHITE_QUEENSIDE) != 0 && (occupied & 0x0E00000000000000L) == 0
+                    && !isSquareAttacked(60, them) && !isSquareAttacked(59, them)) {
+                moves[n++] = encodeMove(60, 58, 0, FLAG_CASTLING);
+            }
+        } else {
+            if ((castlingRights & BLACK_KINGSIDE) != 0 && (occupied & 0x60L) == 0
+                    && !isSquareAttacked(4, them) && !isSquareAttacked(5, them)) {
+                moves[n++] = encodeMove(4, 6, 0, FLAG_CASTLING);
+            }
+            if ((castlingRights & BLACK_QUEENSIDE) != 0 && (occupied & 0x0EL) == 0
+                    && !isSquareAttacked(4, them) && !isSquareAttacked(3, them)) {
+                moves[n++] = encodeMove(4, 2, 0, FLAG_CASTLING);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes all legal moves of the side to move into {@code moves} starting at
+     * {@code start}; returns the index after the last written move.
+     */
+    public int generateLegalMoves(int[] moves, int start) {
+        int end = generatePseudoLegalMoves(moves, start);
+        int us = sideToMove;
+        int n = start;
+        for (int i = start; i < end; i++) {
+            int move = moves[i];
+            makeMove(move);
+            if (!isKingInCheck(us)) {
+                moves[n++] = move;
+            }
+            unmakeMove(move);
+        }
+        return n;
+    }
+
+    private static int addPawnMove(int[] moves, int n, int from, int to, int flags) {
+        int y = to >>> 3;
+        if (y == 0 || y == 7) {
+            moves[n++] = encodeMove(from, to, QUEEN, flags);
+            moves[n++] = encodeMove(from, to, ROOK, flags);
+            moves[n++] = encodeMove(from, to, BISHOP, flags);
+            moves[n++] = encodeMove(from, to, KNIGHT, flags);
+        } else {
+            moves[n++] = encodeMove(from, to, 0, flags);
+        }
+        return n;
+    }
+
+    private static int addMoves(int[] moves, int n, int from, long targets, long enemy) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves[n++] = encodeMove(from, to, 0, (enemy & (1L << to)) != 0 ? FLAG_CAPTURE : 0);
+        }
+        return n;
+    }
+
+    // Make / unmake
+
+    public void makeMove(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int piece = mailbox[from];
+        int captureSquare = (move & FLAG_EN_PASSANT) != 0 ? (sideToMove == WHITE ? to + 8 : to - 8) : to;
+        int captured = mailbox[captureSquare];
+
+        undoStack[ply++] = (captured + 1) | (castlingRights << 4) | ((epSquare + 1) << 8) | (halfmoveClock << 15);
+
+        if (captured != NO_PIECE) {
+            removePiece(captured, captureSquare);
+        }
+        removePiece(piece, from);
+        int promotion = movePromotion(move);
+        addPiece(promotion != 0 ? pieceIndex(sideToMove, promotion) : piece, to);
+
+        if ((move & FLAG_CASTLING) != 0) {
+            int rook = pieceIndex(sideToMove, ROOK);
+            if (to > from) {
+                removePiece(rook, to + 1);
+                addPiece(rook, to - 1);
+            } else {
+                removePiece(rook, to - 2);
+                addPiece(rook, to + 1);
+            }
+        }
+
+        epSquare = (move & FLAG_DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        halfmoveClock = captured != NO_PIECE || piece % 6 == PAWN ? 0 : halfmoveClock + 1;
+        sideToMove ^= 1;
+    }
+
+    public void unmakeMove(int move) {
+        sideToMove ^= 1;
+        int undo = undoStack[--ply];
+        int captured = (undo & 0xF) - 1;
+        castlingRights = (undo >>> 4) & 0xF;
+        epSquare = ((undo >>> 8) & 0x7F) - 1;
+        halfmoveClock = undo >>> 15;
+
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int piece = movePromotion(move) != 0 ? pieceIndex(sideToMove, PAWN) : mailbox[to];
+        removePiece(mailbox[to], to);
+        addPiece(piece, from);
+
+        if ((move & FLAG_CASTLING) != 0) {
+            int rook = pieceIndex(sideToMove, ROOK);
+            if (to > from) {
+                removePiece(rook, to - 1);
+                addPiece(rook, to + 1);
+            } else {
+                removePiece(rook, to + 1);
+                addPiece(rook, to - 2);
+            }
+        }
+        if (captured != NO_PIECE) {
+            int captureSquare = (move & FLAG_EN_PASSANT) != 0 ? (sideToMove == WHITE ? to + 8 : to - 8) : to;
+            addPiece(captured, captureSquare);
+        }
+    }
+
+    private void addPiece(int piece, int square) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        occupancy[piece / 6] |= bit;
+        mailbox[square] = piece;
+    }
+
+    private void removePiece(int piece, int square) {
+        long bit = ~(1L << square);
+        pieces[piece] &= bit;
+        occupancy[piece / 6] &= bit;
+        mailbox[square] = NO_PIECE;
+    }
+
+    // Conversion to the object model
+
+    /**
+     * Converts a packed move into a {@link Move} on {@code board}, which must hold the same position.
+     */
+    public Move toMove(int move, Board board) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        Piece pieceMoved = board.getPiece(from & 7, from >>> 3);
+        Piece pieceCaptured = null;
+        if ((move & FLAG_EN_PASSANT) != 0) {
+            int captureSquare = sideToMove == WHITE ? to + 8 : to - 8;
+            pieceCaptured = board.getPiece(captureSquare & 7, captureSquare >>> 3);
+        } else if ((move & FLAG_CAPTURE) != 0) {
+            pieceCaptured = board.getPiece(to & 7, to >>> 3);
+        }
+        int promotion = movePromotion(move);
+        Piece promotionPiece = promotion != 0 ? createPiece(promotion, pieceMoved.isWhite()) : null;
+        Move result = new Move(from & 7, from >>> 3, to & 7, to >>> 3, pieceMoved, pieceCaptured, promotionPiece);
+        result.setCastlingMove((move & FLAG_CASTLING) != 0);
+        return result;
+    }
+
+    /**
+     * Legal moves of the piece standing on (x, y) of {@code board}, as {@link Move} objects.
+     */
+    public List<Move> getLegalMoves(Board board, int x, int y) {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(moves, 0);
+        int square = y * 8 + x;
+        List<Move> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (moveFrom(moves[i]) == square) {
+                result.add(toMove(moves[i], board));
+            }
+        }
+        return result;
+    }
+
+    // Table initialisation
+
+    private static long stepAttacks(int x, int y, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int newX = x + step[0];
+            int newY = y + step[1];
+            if (newX >= 0 && newX < 8 && newY >= 0 && newY < 8) {
+                attacks |= 1L << (newY * 8 + newX);
+            }
+        }
+        return attacks;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] dir : directions) {
+            int x = square & 7;
+            int y = square >>> 3;
+            while (true) {
+                x += dir[0];
+                y += dir[1];
+                if (x < 0 || x > 7 || y < 0 || y > 7) break;
+                long bit = 1L << (y * 8 + x);
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+            }
+        }
+        return attacks;
+    }
+
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] dir : directions) {
+            int x = (square & 7) + dir[0];
+            int y = (square >>> 3) + dir[1];
+            // The last square of a ray never blocks anything behind it, so it is left out
+            while (x + dir[0] >= 0 && x + dir[0] < 8 && y + dir[1] >= 0 && y + dir[1] < 8) {
+                mask |= 1L << (y * 8 + x);
+                x += dir[0];
+                y += dir[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void initMagic(int square, int[][] directions, long[] masks, long magic, int[] shifts,
+                                  long[][] attackTables) {
+        long mask = relevantMask(square, directions);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+        // Enumerate every subset of the mask (Carry-Rippler) and store its attack set
+        long subset = 0L;
+        do {
+            table[(int) ((subset * magic) >>> (64 - bits))] = slidingAttacks(square, subset, directions);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+        masks[square] = mask;
+        shifts[square] = 64 - bits;
+        attackTables[square] = table;
+    }
+}
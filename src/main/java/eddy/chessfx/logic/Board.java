@@ -1,27 +1,73 @@
 package eddy.chessfx.logic;
 
 import eddy.chessfx.pieces.*;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 
 public class Board {
     private final Piece[][] board;  // The chessboard as a 8x8 array of pieces
-    private final List<Move> moveHistory;  // History of moves
+    private int[] moveHistory = new int[64];  // Moves made since the start position, packed as in BitBoard
+    private int moveCount;
     private boolean whiteTurn;  // true if it is white's turn, false
-    private Move lastMove;  // The last move made
+    private int enPassantSquare = -1;  // Square passed over by a pawn that just advanced two squares, else -1
+    private long hashKey;  // Zobrist key of the position, updated incrementally by makeMove/unmakeMove
+    private static boolean hashDebug = Boolean.getBoolean("chessfx.debugHash");  // Verify every incremental key update
+    private int packedEvaluation;  // Sum of the Evaluation piece-square values of all pieces
+    private int gamePhase;  // Sum of the Evaluation phase weights of all pieces
+    private Evaluation.Tables evaluationTables;  // Tables the sums were taken from
+    private Evaluation.Tables ownEvaluationTables;  // Kept by copies instead of the current tables, null if not set
+    private Piece whiteKing;  // Kings keep their square in getPieceX/getPieceY, so check tests need no search
+    private Piece blackKing;
+    private int halfmoveClock;  // Plies since the last capture or pawn move
+    private int fullmoveNumber = 1;  // Starts at 1 and grows after every move of black
+    private String startFen;  // Position the move history starts from, null for the initial position
+
+    // Undo stack filled by makeMove and consumed by unmakeMove, one entry per move made on this board
+    private int undoCount;
+    private Piece[] undoPieceMoved = new Piece[64];
+    private boolean[] undoHadMoved = new boolean[64];
+    private Piece[] undoCaptured = new Piece[64];
+    private int[] undoCapturedX = new int[64];
+    private int[] undoCapturedY = new int[64];
+    private boolean[] undoRookHadMoved = new boolean[64];
+    private int[] undoEnPassantSquare = new int[64];
+    private Piece[] promotedPieces = new Piece[64];  // Pieces made by promotions at each undo level, reused by the next one
+    private long[] undoHashKey = new long[64];
+    private int[] undoPackedEvaluation = new int[64];
+    private int[] undoGamePhase = new int[64];
+    private int[] undoHalfmoveClock = new int[64];
+
+    // Knight jumps, and the eight directions of the king and the sliding pieces
+    private static final int[] KNIGHT_X = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_Y = {-2, -1, 1, 2, 2, 1, -1, -2};
+    private static final int[] DIRECTION_X = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DIRECTION_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    // Check and pin state of the side to move, filled by analyzeKing for the legal move generator
+    private final int[] pinDirection = new int[64];  // 1 + direction from the king to the pinned piece on a square, else 0
+    private int checkers;
+    private long evasionSquares;  // Bit y * 8 + x set for the checker squares and the squares between them and the king
+    private MoveList scratchMoves;  // Created on first use by the move lookups
 
     public Board() {
         this.board = new Piece[8][8];
-        this.moveHistory = new ArrayList<>();
         setupInitialBoard();
         setWhiteTurn(true);
+        this.hashKey = computeHashKey();
+        computeEvaluation();
+    }
+
+    private Board(Piece[][] board) {
+        this.board = board;
     }
 
     public Board(Board board) {
         this.board = new Piece[8][8];
-        this.moveHistory = new ArrayList<>(board.moveHistory);
+        this.moveHistory = Arrays.copyOf(board.moveHistory, Math.max(64, board.moveCount));
+        this.moveCount = board.moveCount;
         this.whiteTurn = board.whiteTurn;
-        this.lastMove = board.lastMove == null ? null  : new Move(board.lastMove.getStartX(), board.lastMove.getStartY(), board.lastMove.getEndX(), board.lastMove.getEndY(), board.lastMove.getPieceMoved(), board.lastMove.getPieceCaptured(), null);
+        this.enPassantSquare = board.enPassantSquare;
 
         for (int x = 0; x < 8; x++) {
             for (int y = 0; y < 8; y++) {
@@ -31,6 +77,268 @@ public class Board {
                 }
             }
         }
+        this.hashKey = board.hashKey;
+        this.halfmoveClock = board.halfmoveClock;
+        this.fullmoveNumber = board.fullmoveNumber;
+        this.startFen = board.startFen;
+        this.ownEvaluationTables = board.ownEvaluationTables;
+        computeEvaluation();  // Not copied, the evaluation parameters may have changed since
+    }
+
+    /**
+     * The position described by {@code fen}. The halfmove clock and fullmove number may be left
+     * out, as in EPD records. Castling rights are kept by marking the kings and rooks that lost
+     * them as moved. The move history of the board starts from this position.
+     */
+    public static Board fromFen(String fen) {
+        Board position = new Board(new Piece[8][8]);
+        Piece[][] board = position.board;
+        int length = fen.length();
+        int i = skipSpaces(fen, 0);
+
+        // Piece placement from rank 8 down to rank 1
+        int x = 0;
+        int y = 0;
+        int whiteKings = 0;
+        int blackKings = 0;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (x != 8 || y == 7) {
+                    throw invalidFen(fen, "every rank needs 8 squares");
+                }
+                x = 0;
+                y++;
+            } else if (c >= '1' && c <= '8') {
+                x += c - '0';
+            } else {
+                Piece piece = createPiece(c);
+                if (piece == null || x > 7) {
+                    throw invalidFen(fen, piece == null ? "unknown piece '" + c + "'" : "every rank needs 8 squares");
+                }
+                if (piece instanceof King) {
+                    if (piece.isWhite()) {
+                        whiteKings++;
+                    } else {
+                        blackKings++;
+                    }
+                }
+                // Pawns off their start row may not advance two squares; castling rights are set below
+                piece.setHasMoved(piece instanceof King || piece instanceof Rook
+                        || piece instanceof Pawn && y != (piece.isWhite() ? 6 : 1));
+                piece.setPosition(x, y);
+                board[x][y] = piece;
+                x++;
+            }
+            if (x > 8) {
+                throw invalidFen(fen, "every rank needs 8 squares");
+            }
+        }
+        if (x != 8 || y != 7) {
+            throw invalidFen(fen, "the piece placement needs 8 ranks");
+        }
+        if (whiteKings != 1 || blackKings != 1) {
+            throw invalidFen(fen, "each side needs one king");
+        }
+
+        // Side to move
+        i = skipSpaces(fen, i);
+        char side = i < length ? fen.charAt(i++) : ' ';
+        if (side != 'w' && side != 'b') {
+            throw invalidFen(fen, "the side to move must be w or b");
+        }
+        position.whiteTurn = side == 'w';
+
+        // Castling rights; a right without its king and rook on their home squares is ignored
+        i = skipSpaces(fen, i);
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            switch (fen.charAt(i)) {
+                case 'K' -> position.allowCastling(7, 7);
+                case 'Q' -> position.allowCastling(7, 0);
+                case 'k' -> position.allowCastling(0, 7);
+                case 'q' -> position.allowCastling(0, 0);
+                case '-' -> {
+                }
+                default -> throw invalidFen(fen, "unknown castling right '" + fen.charAt(i) + "'");
+            }
+        }
+
+        // En passant target square
+        i = skipSpaces(fen, i);
+        if (i < length && fen.charAt(i) != '-') {
+            int file = fen.charAt(i) - 'a';
+            int row = i + 1 < length ? '8' - fen.charAt(i + 1) : -1;
+            if (file < 0 || file > 7 || row != (position.whiteTurn ? 2 : 5)) {
+                throw invalidFen(fen, "bad en passant square");
+            }
+            int pawnY = position.whiteTurn ? 3 : 4;
+            Piece pawn = board[file][pawnY];
+            if (pawn instanceof Pawn && pawn.isWhite() != position.whiteTurn) {
+                position.enPassantSquare = row * 8 + file;
+            }
+            i += 2;
+        } else {
+            i++;
+        }
+
+        // Halfmove clock and fullmove number
+        i = skipSpaces(fen, i);
+        if (i < length) {
+            int clock = 0;
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                clock = clock * 10 + digit(fen, i);
+            }
+            position.halfmoveClock = clock;
+            i = skipSpaces(fen, i);
+            if (i < length) {
+                int number = 0;
+                for (; i < length && fen.charAt(i) != ' '; i++) {
+                    number = number * 10 + digit(fen, i);
+                }
+                position.fullmoveNumber = Math.max(1, number);
+            }
+        }
+
+        position.startFen = fen;
+        position.hashKey = position.computeHashKey();
+        position.computeEvaluation();
+        return position;
+    }
+
+    private void allowCastling(int y, int rookX) {
+        Piece king = board[4][y];
+        Piece rook = board[rookX][y];
+        boolean white = y == 7;
+        if (king instanceof King && king.isWhite() == white && rook instanceof Rook && rook.isWhite() == white) {
+            king.setHasMoved(false);
+            rook.setHasMoved(false);
+        }
+    }
+
+    private static Piece createPiece(char c) {
+        boolean white = Character.isUpperCase(c);
+        return switch (Character.toLowerCase(c)) {
+            case 'p' -> new Pawn(white);
+            case 'n' -> new Knight(white);
+            case 'b' -> new Bishop(white);
+            case 'r' -> new Rook(white);
+            case 'q' -> new Queen(white);
+            case 'k' -> new King(white);
+            default -> null;
+        };
+    }
+
+    private static int skipSpaces(String fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int digit(String fen, int i) {
+        char c = fen.charAt(i);
+        if (c < '0' || c > '9') {
+            throw invalidFen(fen, "move counters must be numbers");
+        }
+        return c - '0';
+    }
+
+    private static IllegalArgumentException invalidFen(String fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN \"" + fen + "\": " + reason);
+    }
+
+    /**
+     * The position in Forsyth-Edwards Notation. The en passant square is given after every
+     * advance of a pawn by two squares, whether or not a pawn can take it.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int y = 0; y < 8; y++) {
+            int empty = 0;
+            for (int x = 0; x < 8; x++) {
+                Piece piece = board[x][y];
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char letter = "PNBRQK".charAt(BitBoard.pieceType(piece));
+                fen.append(piece.isWhite() ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+            if (y < 7) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(whiteTurn ? " w " : " b ");
+        int castlingRights = getCastlingRights();
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & BitBoard.WHITE_KINGSIDE) != 0) {
+                fen.append('K');
+            }
+            if ((castlingRights & BitBoard.WHITE_QUEENSIDE) != 0) {
+                fen.append('Q');
+            }
+            if ((castlingRights & BitBoard.BLACK_KINGSIDE) != 0) {
+                fen.append('k');
+            }
+            if ((castlingRights & BitBoard.BLACK_QUEENSIDE) != 0) {
+                fen.append('q');
+            }
+        }
+
+        fen.append(' ');
+        if (enPassantSquare != -1) {
+            fen.append(fileLetter(enPassantSquare & 7)).append(rankDigit(enPassantSquare >>> 3));
+        } else {
+            fen.append('-');
+        }
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * Plies since the last capture or pawn move, for the fifty-move rule.
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * The FEN the move history starts from, or {@code null} if it starts from the initial
+     * position.
+     */
+    public String getStartFen() {
+        return startFen;
+    }
+
+    /**
+     * Number of moves in the history, made since the start position.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Move {@code index} of the history, packed as in {@link BitBoard}.
+     */
+    public int getHistoryMove(int index) {
+        if (index < 0 || index >= moveCount) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + moveCount);
+        }
+        return moveHistory[index];
     }
 
     public boolean isWhiteTurn() {
@@ -38,9 +346,155 @@ public class Board {
     }
 
     public void setWhiteTurn(boolean whiteTurn) {
+        if (this.whiteTurn != whiteTurn) {
+            hashKey ^= Zobrist.BLACK_TO_MOVE;
+        }
         this.whiteTurn = whiteTurn;
     }
 
+    /**
+     * 64-bit Zobrist key of the position: pieces, side to move, castling rights and the en
+     * passant file. Equal positions have equal keys whatever move order led to them.
+     */
+    public long hashKey() {
+        return hashKey;
+    }
+
+    /**
+     * When enabled, every makeMove/unmakeMove recomputes the key from scratch and throws
+     * {@link IllegalStateException} if it differs from the incrementally updated one.
+     * Also enabled with {@code -Dchessfx.debugHash=true}.
+     */
+    public static void setHashDebug(boolean hashDebug) {
+        Board.hashDebug = hashDebug;
+    }
+
+    public long computeHashKey() {
+        long key = 0L;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if (board[x][y] != null) {
+                    key ^= pieceKey(board[x][y], x, y);
+                }
+            }
+        }
+        key ^= Zobrist.CASTLING[getCastlingRights()];
+        int epFile = getEnPassantFile();
+        if (epFile != -1) {
+            key ^= Zobrist.EN_PASSANT_FILE[epFile];
+        }
+        if (!whiteTurn) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    // Incrementally kept sums read by Evaluation
+    int packedEvaluation() {
+        return packedEvaluation;
+    }
+
+    int gamePhase() {
+        return gamePhase;
+    }
+
+    Evaluation.Tables evaluationTables() {
+        return evaluationTables;
+    }
+
+    /**
+     * Evaluates this board and its copies with {@code tables} instead of the current tables of
+     * {@link Evaluation}, or with the current ones again if {@code tables} is null.
+     */
+    public void setEvaluationTables(Evaluation.Tables tables) {
+        ownEvaluationTables = tables;
+        computeEvaluation();
+    }
+
+    // Also finds the kings, which only change when pieces are placed or removed directly
+    private void computeEvaluation() {
+        evaluationTables = ownEvaluationTables != null ? ownEvaluationTables : Evaluation.currentTables();
+        packedEvaluation = 0;
+        gamePhase = 0;
+        whiteKing = null;
+        blackKing = null;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board[x][y];
+                if (piece != null) {
+                    packedEvaluation += evaluationTables.pieceSquare(piece, x, y);
+                    gamePhase += evaluationTables.phaseWeight(piece);
+                    if (piece instanceof King) {
+                        if (piece.isWhite()) {
+                            whiteKing = piece;
+                        } else {
+                            blackKing = piece;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static long pieceKey(Piece piece, int x, int y) {
+        return Zobrist.PIECE_SQUARE[(piece.isWhite() ? 0 : 6) + BitBoard.pieceType(piece)][y * 8 + x];
+    }
+
+    private void verifyHashKey() {
+        long expected = computeHashKey();
+        if (expected != hashKey) {
+            throw new IllegalStateException("Incremental hash key " + Long.toHexString(hashKey)
+                    + " differs from recomputed key " + Long.toHexString(expected));
+        }
+    }
+
+    /**
+     * Castling rights as {@link BitBoard} flags: a side keeps a right while its king and that
+     * rook stand unmoved on their home squares.
+     */
+    public int getCastlingRights() {
+        return castlingRights(7, BitBoard.WHITE_KINGSIDE, BitBoard.WHITE_QUEENSIDE)
+                | castlingRights(0, BitBoard.BLACK_KINGSIDE, BitBoard.BLACK_QUEENSIDE);
+    }
+
+    private int castlingRights(int y, int kingside, int queenside) {
+        Piece king = board[4][y];
+        if (!(king instanceof King) || king.hasMoved()) {
+            return 0;
+        }
+        int rights = 0;
+        Piece rook = board[7][y];
+        if (rook instanceof Rook && !rook.hasMoved() && rook.isWhite() == king.isWhite()) {
+            rights |= kingside;
+        }
+        rook = board[0][y];
+        if (rook instanceof Rook && !rook.hasMoved() && rook.isWhite() == king.isWhite()) {
+            rights |= queenside;
+        }
+        return rights;
+    }
+
+    /**
+     * File of the pawn that just advanced two squares if a pawn of the side to move stands
+     * next to it and could take it en passant, otherwise -1.
+     */
+    public int getEnPassantFile() {
+        if (enPassantSquare == -1) {
+            return -1;
+        }
+        int x = enPassantSquare & 7;
+        int y = whiteTurn ? 3 : 4;
+        Piece pawn = board[x][y];
+        if (!(pawn instanceof Pawn) || pawn.isWhite() == whiteTurn) {
+            return -1;
+        }
+        Piece left = x > 0 ? board[x - 1][y] : null;
+        Piece right = x < 7 ? board[x + 1][y] : null;
+        boolean capturable = left instanceof Pawn && left.isWhite() == whiteTurn
+                || right instanceof Pawn && right.isWhite() == whiteTurn;
+        return capturable ? x : -1;
+    }
+
     private void setupInitialBoard() {
         // Set up black pieces
         for (int i = 0; i < 8; i++) {
@@ -78,46 +532,355 @@ public class Board {
         }
     }
 
-    public Move getLastMove() {
-        return lastMove;
+    /**
+     * Square y * 8 + x passed over by the pawn that has just advanced two squares, whether or
+     * not a pawn can take it there, otherwise -1.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
+    /**
+     * Plays {@code move} if it is a legal move of the side to move: moves the piece, removes the
+     * captured piece (including an en passant pawn), moves the rook when castling, promotes to
+     * {@link Move#getPromotionPiece()} and passes the turn. A castling move is marked as such.
+     * Any other move leaves the board unchanged and {@code false} is returned. Every successful
+     * call can be reverted with {@link #unmakeMove()}.
+     */
     public boolean makeMove(Move move) {
-        if (validateMove(move)) {
-            Piece piece = board[move.getStartX()][move.getStartY()];
-            Piece targetPiece = board[move.getEndX()][move.getEndY()];
-
-            // Check for castling
-            if (piece instanceof King && Math.abs(move.getStartX() - move.getEndX()) == 2) {
-                int rookX = move.getEndX() > move.getStartX() ? 7 : 0;
-                int rookY = move.getStartY();
-                Piece rook = board[rookX][rookY];
-                board[move.getEndX() > move.getStartX() ? 5 : 3][rookY] = rook;
-                board[rookX][rookY] = null;
-                rook.setPosition(move.getEndX() > move.getStartX() ? 5 : 3, rookY);
-                rook.setHasMoved(true);
-                piece.setHasMoved(true);
-                move.setCastlingMove(true);
-            }
-
-            board[move.getEndX()][move.getEndY()] = piece;
-            board[move.getStartX()][move.getStartY()] = null;
-            moveHistory.add(move);
-            if (isKingInCheck(piece.isWhite())) {
-                // Undo the move if it leaves the king in check
-                board[move.getStartX()][move.getStartY()] = piece;
-                board[move.getEndX()][move.getEndY()] = targetPiece;
-                moveHistory.remove(move);
-                piece.setHasMoved(false);
-                return false;
+        if (!validateMove(move)) {
+            return false;
+        }
+        int promotion = move.getPromotionPiece() == null ? 0 : BitBoard.pieceType(move.getPromotionPiece());
+        int packedMove = findPackedMove(move.getStartX(), move.getStartY(), move.getEndX(), move.getEndY(), promotion);
+        if (packedMove == 0) {
+            return false;
+        }
+        move.setCastlingMove((packedMove & BitBoard.FLAG_CASTLING) != 0);
+        makeMove(packedMove, move.getPromotionPiece());
+        return true;
+    }
+
+    /**
+     * Plays a move packed as in {@link BitBoard}, which must come from
+     * {@link #generateLegalMoves(MoveList)} or {@link #generateLegalCaptures(MoveList)} for the
+     * current position; it is not checked. Allocates nothing, except the piece of a promotion
+     * the first time one is made at this depth of the undo stack. Revert with {@link #unmakeMove()}.
+     */
+    public void makeMove(int move) {
+        makeMove(move, null);
+    }
+
+    private void makeMove(int move, Piece promotionPiece) {
+        int from = BitBoard.moveFrom(move);
+        int to = BitBoard.moveTo(move);
+        int startX = from & 7;
+        int startY = from >>> 3;
+        int endX = to & 7;
+        int endY = to >>> 3;
+        Piece piece = board[startX][startY];
+        Piece captured = board[endX][endY];
+        int capturedY = endY;
+
+        // Take the castling rights and en passant file of the old position out of the key
+        ensureUndoCapacity();
+        undoHashKey[undoCount] = hashKey;
+        undoPackedEvaluation[undoCount] = packedEvaluation;
+        undoGamePhase[undoCount] = gamePhase;
+        undoHalfmoveClock[undoCount] = halfmoveClock;
+        undoEnPassantSquare[undoCount] = enPassantSquare;
+        hashKey ^= Zobrist.CASTLING[getCastlingRights()];
+        int epFile = getEnPassantFile();
+        if (epFile != -1) {
+            hashKey ^= Zobrist.EN_PASSANT_FILE[epFile];
+        }
+
+        // En passant: the pawn taken stands beside the moving pawn, not on the target square
+        if ((move & BitBoard.FLAG_EN_PASSANT) != 0) {
+            capturedY = startY;
+            captured = board[endX][capturedY];
+            board[endX][capturedY] = null;
+        }
+        if (captured != null) {
+            hashKey ^= pieceKey(captured, endX, capturedY);
+            packedEvaluation -= evaluationTables.pieceSquare(captured, endX, capturedY);
+            gamePhase -= evaluationTables.phaseWeight(captured);
+        }
+
+        undoPieceMoved[undoCount] = piece;
+        undoHadMoved[undoCount] = piece.hasMoved();
+        undoCaptured[undoCount] = captured;
+        undoCapturedX[undoCount] = endX;
+        undoCapturedY[undoCount] = capturedY;
+
+        // Check for castling
+        if ((move & BitBoard.FLAG_CASTLING) != 0) {
+            int rookX = endX > startX ? 7 : 0;
+            int rookNewX = endX > startX ? 5 : 3;
+            Piece rook = board[rookX][startY];
+            undoRookHadMoved[undoCount] = rook.hasMoved();
+            board[rookNewX][startY] = rook;
+            board[rookX][startY] = null;
+            hashKey ^= pieceKey(rook, rookX, startY) ^ pieceKey(rook, rookNewX, startY);
+            packedEvaluation += evaluationTables.pieceSquare(rook, rookNewX, startY) - evaluationTables.pieceSquare(rook, rookX, startY);
+            rook.setPosition(rookNewX, startY);
+            rook.setHasMoved(true);
+        }
+
+        board[endX][endY] = piece;
+        board[startX][startY] = null;
+        hashKey ^= pieceKey(piece, startX, startY);
+        packedEvaluation -= evaluationTables.pieceSquare(piece, startX, startY);
+        piece.setPosition(endX, endY);
+        piece.setHasMoved(true);
+
+        // Check for pawn promotion
+        int promotion = BitBoard.movePromotion(move);
+        if (promotion != 0) {
+            if (promotionPiece == null) {
+                promotionPiece = promotedPiece(promotion, piece.isWhite());
             }
-            piece.setHasMoved(true);
-            lastMove = move;
-            setWhiteTurn(!isWhiteTurn());
+            board[endX][endY] = promotionPiece;
+            promotionPiece.setPosition(endX, endY);
+            promotionPiece.setHasMoved(true);
+        }
+        undoCount++;
+        hashKey ^= pieceKey(board[endX][endY], endX, endY);
+        packedEvaluation += evaluationTables.pieceSquare(board[endX][endY], endX, endY);
+        gamePhase += evaluationTables.phaseWeight(board[endX][endY]) - evaluationTables.phaseWeight(piece);
 
-            return true;
+        if (moveCount == moveHistory.length) {
+            moveHistory = Arrays.copyOf(moveHistory, moveCount * 2);
+        }
+        moveHistory[moveCount++] = move;
+        enPassantSquare = (move & BitBoard.FLAG_DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+        halfmoveClock = piece instanceof Pawn || captured != null ? 0 : halfmoveClock + 1;
+        if (!piece.isWhite()) {
+            fullmoveNumber++;
+        }
+        setWhiteTurn(!isWhiteTurn());
+        hashKey ^= Zobrist.CASTLING[getCastlingRights()];
+        epFile = getEnPassantFile();
+        if (epFile != -1) {
+            hashKey ^= Zobrist.EN_PASSANT_FILE[epFile];
+        }
+        if (hashDebug) {
+            verifyHashKey();
+        }
+    }
+
+    // The piece made by a promotion at the current undo level; the one of an earlier promotion
+    // that has been unmade is reused when it has the same type and colour
+    private Piece promotedPiece(int type, boolean isWhite) {
+        Piece piece = promotedPieces[undoCount];
+        if (piece == null || piece.isWhite() != isWhite || BitBoard.pieceType(piece) != type) {
+            piece = BitBoard.createPiece(type, isWhite);
+            promotedPieces[undoCount] = piece;
+        }
+        return piece;
+    }
+
+    /**
+     * Reverts the last move made with {@link #makeMove(Move)} or {@link #makeMove(int)} on this
+     * board, restoring the captured piece, castling rook, promoted pawn, {@code hasMoved} flags,
+     * en passant square and turn.
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to undo on this board");
+        }
+        undoCount--;
+        int move = moveHistory[--moveCount];
+        int startX = BitBoard.moveFrom(move) & 7;
+        int startY = BitBoard.moveFrom(move) >>> 3;
+        int endX = BitBoard.moveTo(move) & 7;
+        int endY = BitBoard.moveTo(move) >>> 3;
+
+        Piece piece = undoPieceMoved[undoCount];
+        board[endX][endY] = null;  // Also drops the promotion piece
+        board[startX][startY] = piece;
+        piece.setPosition(startX, startY);
+        piece.setHasMoved(undoHadMoved[undoCount]);
+
+        Piece captured = undoCaptured[undoCount];
+        if (captured != null) {
+            board[undoCapturedX[undoCount]][undoCapturedY[undoCount]] = captured;
+            captured.setPosition(undoCapturedX[undoCount], undoCapturedY[undoCount]);
+        }
+
+        if ((move & BitBoard.FLAG_CASTLING) != 0) {
+            int rookX = endX > startX ? 7 : 0;
+            int rookNewX = endX > startX ? 5 : 3;
+            Piece rook = board[rookNewX][startY];
+            board[rookX][startY] = rook;
+            board[rookNewX][startY] = null;
+            rook.setPosition(rookX, startY);
+            rook.setHasMoved(undoRookHadMoved[undoCount]);
+        }
+
+        undoPieceMoved[undoCount] = null;
+        undoCaptured[undoCount] = null;
+        enPassantSquare = undoEnPassantSquare[undoCount];
+        whiteTurn = !whiteTurn;
+        hashKey = undoHashKey[undoCount];
+        packedEvaluation = undoPackedEvaluation[undoCount];
+        gamePhase = undoGamePhase[undoCount];
+        halfmoveClock = undoHalfmoveClock[undoCount];
+        if (!piece.isWhite()) {
+            fullmoveNumber--;
+        }
+        if (hashDebug) {
+            verifyHashKey();
         }
-        return false;
+    }
+
+    private void ensureUndoCapacity() {
+        if (undoCount == undoPieceMoved.length) {
+            int capacity = undoCount * 2;
+            undoPieceMoved = Arrays.copyOf(undoPieceMoved, capacity);
+            undoHadMoved = Arrays.copyOf(undoHadMoved, capacity);
+            undoCaptured = Arrays.copyOf(undoCaptured, capacity);
+            undoCapturedX = Arrays.copyOf(undoCapturedX, capacity);
+            undoCapturedY = Arrays.copyOf(undoCapturedY, capacity);
+            undoRookHadMoved = Arrays.copyOf(undoRookHadMoved, capacity);
+            undoEnPassantSquare = Arrays.copyOf(undoEnPassantSquare, capacity);
+            promotedPieces = Arrays.copyOf(promotedPieces, capacity);
+            undoHashKey = Arrays.copyOf(undoHashKey, capacity);
+            undoPackedEvaluation = Arrays.copyOf(undoPackedEvaluation, capacity);
+            undoGamePhase = Arrays.copyOf(undoGamePhase, capacity);
+            undoHalfmoveClock = Arrays.copyOf(undoHalfmoveClock, capacity);
+        }
+    }
+
+    /**
+     * The {@link Move} of the current position for a move packed as in {@link BitBoard}, with
+     * the pieces of this board and a new promotion piece.
+     */
+    public Move toMove(int move) {
+        int from = BitBoard.moveFrom(move);
+        int to = BitBoard.moveTo(move);
+        Piece pieceMoved = board[from & 7][from >>> 3];
+        Piece pieceCaptured = (move & BitBoard.FLAG_EN_PASSANT) != 0 ? board[to & 7][from >>> 3] : board[to & 7][to >>> 3];
+        int promotion = BitBoard.movePromotion(move);
+        Piece promotionPiece = promotion != 0 ? BitBoard.createPiece(promotion, pieceMoved.isWhite()) : null;
+        Move result = new Move(from & 7, from >>> 3, to & 7, to >>> 3, pieceMoved, pieceCaptured, promotionPiece);
+        result.setCastlingMove((move & BitBoard.FLAG_CASTLING) != 0);
+        return result;
+    }
+
+    /**
+     * Finds the legal move of the side to move given in coordinate notation, e.g. "e2e4" or
+     * "e7e8q". Returns null if there is none.
+     */
+    public Move findMove(String coordinates) {
+        if (coordinates.length() < 4) {
+            return null;
+        }
+        int startX = coordinates.charAt(0) - 'a';
+        int startY = '8' - coordinates.charAt(1);
+        int endX = coordinates.charAt(2) - 'a';
+        int endY = '8' - coordinates.charAt(3);
+        char promotion = coordinates.length() > 4 ? Character.toLowerCase(coordinates.charAt(4)) : ' ';
+        return findLegalMove(startX, startY, endX, endY, promotion);
+    }
+
+    /**
+     * Finds the legal move written as {@code san} in standard algebraic notation, e.g. "Nbd7",
+     * "exd5", "e8=Q+" or "O-O"; check and annotation suffixes are ignored. Returns
+     * {@code null} if no legal move matches.
+     */
+    public Move findMoveBySan(String san) {
+        int length = san.length();
+        while (length > 0 && "+#!?".indexOf(san.charAt(length - 1)) >= 0) {
+            length--;
+        }
+        if (length < 2) {
+            return null;
+        }
+        int homeY = whiteTurn ? 7 : 0;
+        if (san.startsWith("O-O") || san.startsWith("0-0")) {
+            int endX = length >= 5 ? 2 : 6;  // O-O-O or O-O
+            return findLegalMove(4, homeY, endX, homeY, ' ');
+        }
+
+        char promotion = ' ';
+        int equals = san.indexOf('=');
+        if (equals > 0 && equals + 1 < length) {
+            promotion = Character.toLowerCase(san.charAt(equals + 1));
+            length = equals;
+        } else if ("NBRQ".indexOf(san.charAt(length - 1)) >= 0 && Character.isDigit(san.charAt(length - 2))) {
+            promotion = Character.toLowerCase(san.charAt(length - 1));  // Promotion written without '='
+            length--;
+        }
+        if (length < 2) {
+            return null;
+        }
+        int endX = san.charAt(length - 2) - 'a';
+        int endY = '8' - san.charAt(length - 1);
+
+        int start = 0;
+        int type = "NBRQK".indexOf(san.charAt(0)) + 1;  // 0 is a pawn, as in BitBoard
+        if (type > 0) {
+            start = 1;
+        }
+        int fromX = -1;
+        int fromY = -1;
+        for (int i = start; i < length - 2; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromX = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromY = '8' - c;
+            }
+        }
+
+        for (int x = 0; x < 8; x++) {
+            if (fromX != -1 && x != fromX) {
+                continue;
+            }
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board[x][y];
+                if (piece == null || piece.isWhite() != whiteTurn || BitBoard.pieceType(piece) != type || (fromY != -1 && y != fromY)) {
+                    continue;
+                }
+                Move move = findLegalMove(x, y, endX, endY, promotion);
+                if (move != null) {
+                    return move;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Move findLegalMove(int startX, int startY, int endX, int endY, char promotion) {
+        int move = findPackedMove(startX, startY, endX, endY, " nbrq".indexOf(promotion));
+        return move == 0 ? null : toMove(move);
+    }
+
+    // The legal move from (startX, startY) to (endX, endY), promoting to the piece type
+    // promotion if it is a promotion, or 0 if there is none
+    private int findPackedMove(int startX, int startY, int endX, int endY, int promotion) {
+        if (!isMoveWithinBoard(startX, startY) || !isMoveWithinBoard(endX, endY)) {
+            return 0;
+        }
+        MoveList moves = scratchMoves();
+        generateMoves(moves, false, startY * 8 + startX);
+        int to = endY * 8 + endX;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int movePromotion = BitBoard.movePromotion(move);
+            if (BitBoard.moveTo(move) == to && (movePromotion == 0 || movePromotion == promotion)) {
+                return move;
+            }
+        }
+        return 0;
+    }
+
+    private MoveList scratchMoves() {
+        if (scratchMoves == null) {
+            scratchMoves = new MoveList();
+        }
+        return scratchMoves;
     }
 
     public boolean validateMove(Move move) {
@@ -145,83 +908,389 @@ public boolean isSquareOccupied(int x, int y) {
         return null;
     }
 
+    public Piece getKing(boolean isWhite) {
+        return isWhite ? whiteKing : blackKing;
+    }
+
     public boolean isKingInCheck(boolean isWhite) {
-    for (int x = 0; x < 8; x++) {
+        Piece king = isWhite ? whiteKing : blackKing;
+        return king != null && isSquareThreatened(king.getPieceX(), king.getPieceY(), !isWhite);
+    }
+
+    /**
+     * Whether the side {@code isWhite} is checkmated; only the side to move can be.
+     */
+    public boolean isCheckmate(boolean isWhite) {
+        return isWhite == whiteTurn && isKingInCheck(isWhite) && !hasLegalMove();
+    }
+
+    public boolean isStalemate(boolean isWhite) {
+        return isWhite == whiteTurn && !isKingInCheck(isWhite) && !hasLegalMove();
+    }
+
+    /**
+     * Legal moves of the side to move. Checks and pins are worked out once from the king, so
+     * no move is tried on the board: with two checkers only the king moves, with one every
+     * other move must take the checker or block its ray, a pinned piece stays on its pin
+     * line, and the king and a castling king only cross unattacked squares.
+     */
+    public List<Move> getLegalMoves() {
+        MoveList moves = new MoveList();
+        generateMoves(moves, false, -1);
+        return toMoves(moves);
+    }
+
+    /**
+     * Legal moves of the piece on (x, y), empty unless it belongs to the side to move.
+     */
+    public List<Move> getLegalMoves(int x, int y) {
+        MoveList moves = new MoveList();
+        if (isMoveWithinBoard(x, y)) {
+            generateMoves(moves, false, y * 8 + x);
+        }
+        return toMoves(moves);
+    }
+
+    private List<Move> toMoves(MoveList moves) {
+        List<Move> result = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            result.add(toMove(moves.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the contents of {@code moves} with the legal moves of the side to move, packed
+     * as in {@link BitBoard}, for {@link #makeMove(int)}. Nothing is allocated.
+     */
+    public void generateLegalMoves(MoveList moves) {
+        generateMoves(moves, false, -1);
+    }
+
+    /**
+     * Like {@link #generateLegalMoves(MoveList)} for captures, en passant included, and
+     * promotions only, for the quiescence search; quiet moves are dropped before their
+     * legality is worked out.
+     */
+    public void generateLegalCaptures(MoveList moves) {
+        generateMoves(moves, true, -1);
+    }
+
+    private boolean hasLegalMove() {
+        MoveList moves = scratchMoves();
+        generateMoves(moves, false, -1);
+        return !moves.isEmpty();
+    }
+
+    // Legal moves of the side to move, or only of the piece on onlySquare unless it is -1
+    private void generateMoves(MoveList moves, boolean capturesOnly, int onlySquare) {
+        moves.clear();
+        analyzeKing();
+        if (onlySquare != -1) {
+            addPieceMoves(moves, onlySquare & 7, onlySquare >>> 3, capturesOnly);
+            return;
+        }
         for (int y = 0; y < 8; y++) {
-            Piece piece = board[x][y];
-            if (piece instanceof King && piece.isWhite() == isWhite) {
-                return isSquareThreatened(x, y, !isWhite);
+            for (int x = 0; x < 8; x++) {
+                addPieceMoves(moves, x, y, capturesOnly);
             }
         }
     }
-    return false;
-}
 
-public boolean isCheckmate(boolean isWhite) {
-    if (!isKingInCheck(isWhite)) return false;
-    for (int x = 0; x < 8; x++) {
-        for (int y = 0; y < 8; y++) {
-            Piece piece = board[x][y];
-            if (piece != null && piece.isWhite() == isWhite) {
-                List<Move> possibleMoves = piece.getPossibleMoves(this, x, y);
-                for (Move move : possibleMoves) {
-                    Piece temp = board[move.getEndX()][move.getEndY()];
-                    board[move.getEndX()][move.getEndY()] = piece;
-                    board[x][y] = null;
-                    if (!isKingInCheck(isWhite)) {
-                        board[x][y] = piece;
-                        board[move.getEndX()][move.getEndY()] = temp;
-                        return false;
+    private void addPieceMoves(MoveList moves, int x, int y, boolean capturesOnly) {
+        Piece piece = board[x][y];
+        if (piece == null || piece.isWhite() != whiteTurn) {
+            return;
+        }
+        int type = BitBoard.pieceType(piece);
+        if (type == BitBoard.KING) {
+            addKingMoves(moves, piece, x, y, capturesOnly);
+        } else if (checkers < 2) {  // Only the king can answer a double check
+            switch (type) {
+                case BitBoard.PAWN -> addPawnMoves(moves, piece, x, y, capturesOnly);
+                case BitBoard.KNIGHT -> addKnightMoves(moves, x, y, capturesOnly);
+                case BitBoard.BISHOP -> addSlidingMoves(moves, x, y, 1, 2, capturesOnly);
+                case BitBoard.ROOK -> addSlidingMoves(moves, x, y, 0, 2, capturesOnly);
+                default -> addSlidingMoves(moves, x, y, 0, 1, capturesOnly);
+            }
+        }
+    }
+
+    private void addPawnMoves(MoveList moves, Piece pawn, int x, int y, boolean capturesOnly) {
+        int direction = whiteTurn ? -1 : 1;  // White pawns move towards row 0
+        int toY = y + direction;
+        if (toY < 0 || toY > 7) {
+            return;
+        }
+        int from = y * 8 + x;
+        if (board[x][toY] == null) {
+            if (!capturesOnly || toY == 0 || toY == 7) {
+                addPawnMove(moves, from, toY * 8 + x, 0);
+            }
+            int doubleY = toY + direction;
+            if (!capturesOnly && y == (whiteTurn ? 6 : 1) && board[x][doubleY] == null && isLegal(from, doubleY * 8 + x)) {
+                moves.add(BitBoard.encodeMove(from, doubleY * 8 + x, 0, BitBoard.FLAG_DOUBLE_PUSH));
+            }
+        }
+        for (int toX = x - 1; toX <= x + 1; toX += 2) {
+            if (toX < 0 || toX > 7) {
+                continue;
+            }
+            int to = toY * 8 + toX;
+            Piece target = board[toX][toY];
+            if (target != null) {
+                if (target.isWhite() != whiteTurn) {
+                    addPawnMove(moves, from, to, BitBoard.FLAG_CAPTURE);
+                }
+            } else if (to == enPassantSquare && isEnPassantLegal(pawn, x, y, toX, toY)) {
+                moves.add(BitBoard.encodeMove(from, to, 0, BitBoard.FLAG_CAPTURE | BitBoard.FLAG_EN_PASSANT));
+            }
+        }
+    }
+
+    // A move onto the last row is added once for every piece the pawn can promote to
+    private void addPawnMove(MoveList moves, int from, int to, int flags) {
+        if (!isLegal(from, to)) {
+            return;
+        }
+        if (to < 8 || to >= 56) {
+            moves.add(BitBoard.encodeMove(from, to, BitBoard.QUEEN, flags));
+            moves.add(BitBoard.encodeMove(from, to, BitBoard.ROOK, flags));
+            moves.add(BitBoard.encodeMove(from, to, BitBoard.BISHOP, flags));
+            moves.add(BitBoard.encodeMove(from, to, BitBoard.KNIGHT, flags));
+        } else {
+            moves.add(BitBoard.encodeMove(from, to, 0, flags));
+        }
+    }
+
+    private void addKnightMoves(MoveList moves, int x, int y, boolean capturesOnly) {
+        for (int i = 0; i < 8; i++) {
+            int toX = x + KNIGHT_X[i];
+            int toY = y + KNIGHT_Y[i];
+            if (toX >= 0 && toX < 8 && toY >= 0 && toY < 8) {
+                addMove(moves, y * 8 + x, toX, toY, capturesOnly);
+            }
+        }
+    }
+
+    // Directions first, first + step, ... of DIRECTION_X/Y: the even ones are straight, the
+    // odd ones diagonal
+    private void addSlidingMoves(MoveList moves, int x, int y, int first, int step, boolean capturesOnly) {
+        for (int i = first; i < 8; i += step) {
+            int dx = DIRECTION_X[i];
+            int dy = DIRECTION_Y[i];
+            for (int toX = x + dx, toY = y + dy; toX >= 0 && toX < 8 && toY >= 0 && toY < 8; toX += dx, toY += dy) {
+                addMove(moves, y * 8 + x, toX, toY, capturesOnly);
+                if (board[toX][toY] != null) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // A knight or sliding piece move onto an empty square or an enemy piece, if it is legal
+    private void addMove(MoveList moves, int from, int toX, int toY, boolean capturesOnly) {
+        Piece target = board[toX][toY];
+        if (target == null ? capturesOnly : target.isWhite() == whiteTurn) {
+            return;
+        }
+        int to = toY * 8 + toX;
+        if (isLegal(from, to)) {
+            moves.add(BitBoard.encodeMove(from, to, 0, target == null ? 0 : BitBoard.FLAG_CAPTURE));
+        }
+    }
+
+    private void addKingMoves(MoveList moves, Piece king, int x, int y, boolean capturesOnly) {
+        int from = y * 8 + x;
+        boolean enemy = !whiteTurn;
+        // Lift the king so that a slider checking it also covers the squares behind it
+        board[x][y] = null;
+        for (int i = 0; i < 8; i++) {
+            int toX = x + DIRECTION_X[i];
+            int toY = y + DIRECTION_Y[i];
+            if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
+                continue;
+            }
+            Piece target = board[toX][toY];
+            if ((target == null ? !capturesOnly : target.isWhite() != whiteTurn) && !isSquareThreatened(toX, toY, enemy)) {
+                moves.add(BitBoard.encodeMove(from, toY * 8 + toX, 0, target == null ? 0 : BitBoard.FLAG_CAPTURE));
+            }
+        }
+        board[x][y] = king;
+
+        // The king may not castle out of, through or into check
+        if (capturesOnly || checkers > 0 || king.hasMoved() || x != 4 || y != (whiteTurn ? 7 : 0)) {
+            return;
+        }
+        if (isUnmovedRook(7, y) && board[5][y] == null && board[6][y] == null
+                && !isSquareThreatened(5, y, enemy) && !isSquareThreatened(6, y, enemy)) {
+            moves.add(BitBoard.encodeMove(from, from + 2, 0, BitBoard.FLAG_CASTLING));
+        }
+        if (isUnmovedRook(0, y) && board[3][y] == null && board[2][y] == null && board[1][y] == null
+                && !isSquareThreatened(3, y, enemy) && !isSquareThreatened(2, y, enemy)) {
+            moves.add(BitBoard.encodeMove(from, from - 2, 0, BitBoard.FLAG_CASTLING));
+        }
+    }
+
+    private boolean isUnmovedRook(int x, int y) {
+        Piece rook = board[x][y];
+        return rook instanceof Rook && !rook.hasMoved() && rook.isWhite() == whiteTurn;
+    }
+
+    // Finds the pieces checking the king of the side to move and the pieces pinned to it
+    private void analyzeKing() {
+        Arrays.fill(pinDirection, 0);
+        checkers = 0;
+        evasionSquares = 0;
+        Piece king = whiteTurn ? whiteKing : blackKing;
+        if (king == null) {
+            return;
+        }
+        int kingX = king.getPieceX();
+        int kingY = king.getPieceY();
+        boolean enemy = !whiteTurn;
+
+        int pawnY = enemy ? kingY + 1 : kingY - 1;
+        for (int dx = -1; dx <= 1; dx += 2) {
+            if (isAttacker(kingX + dx, pawnY, enemy, Pawn.class)) {
+                addChecker(kingX + dx, pawnY, 0L);
+            }
+        }
+        for (int i = 0; i < 8; i++) {
+            if (isAttacker(kingX + KNIGHT_X[i], kingY + KNIGHT_Y[i], enemy, Knight.class)) {
+                addChecker(kingX + KNIGHT_X[i], kingY + KNIGHT_Y[i], 0L);
+            }
+        }
+
+        // A slider is a checker if nothing stands between it and the king, and pins the piece
+        // between them if that is the only one and it is ours
+        for (int i = 0; i < 8; i++) {
+            int dx = DIRECTION_X[i];
+            int dy = DIRECTION_Y[i];
+            long ray = 0L;
+            int pinned = -1;
+            for (int x = kingX + dx, y = kingY + dy; x >= 0 && x < 8 && y >= 0 && y < 8; x += dx, y += dy) {
+                Piece piece = board[x][y];
+                if (piece == null) {
+                    ray |= 1L << (y * 8 + x);
+                    continue;
+                }
+                if (piece.isWhite() == whiteTurn) {
+                    if (pinned != -1) {
+                        break;
                     }
-                    board[x][y] = piece;
-                    board[move.getEndX()][move.getEndY()] = temp;
+                    pinned = y * 8 + x;
+                    continue;
                 }
+                if (piece instanceof Queen || (dx == 0 || dy == 0 ? piece instanceof Rook : piece instanceof Bishop)) {
+                    if (pinned == -1) {
+                        addChecker(x, y, ray);
+                    } else {
+                        pinDirection[pinned] = i + 1;
+                    }
+                }
+                break;
             }
         }
     }
-    return true;
-}
 
-    private boolean isSquareThreatened(int x, int y, boolean isWhite) {
-    for (int i = 0; i < 8; i++) {
-        for (int j = 0; j < 8; j++) {
-            Piece piece = getPiece(i, j);
-            if (piece != null && piece.isWhite() == isWhite) {
-                if (!(piece instanceof King)) {
-                    List<Move> moves = piece.getPossibleMoves(this, i, j);
-                    for (Move move : moves) {
-                        if (move.getEndX() == x && move.getEndY() == y) {
-                            return true;
-                        }
+    private void addChecker(int x, int y, long ray) {
+        checkers++;
+        evasionSquares |= ray | 1L << (y * 8 + x);
+    }
+
+    // Decides a pseudo-legal move from one square to another of a piece other than the king
+    // with the state left by analyzeKing; en passant is decided by isEnPassantLegal
+    private boolean isLegal(int from, int to) {
+        int pin = pinDirection[from];
+        if (pin != 0) {
+            Piece king = whiteTurn ? whiteKing : blackKing;
+            // The target must stay on the line through the king and the pinner
+            if (((to & 7) - king.getPieceX()) * DIRECTION_Y[pin - 1] != ((to >>> 3) - king.getPieceY()) * DIRECTION_X[pin - 1]) {
+                return false;
+            }
+        }
+        return checkers == 0 || (evasionSquares & 1L << to) != 0;
+    }
+
+    // En passant takes two pawns off one rank, which pins and checks do not describe, so the
+    // three squares are changed and the king is tested directly
+    private boolean isEnPassantLegal(Piece pawn, int startX, int startY, int endX, int endY) {
+        Piece king = whiteTurn ? whiteKing : blackKing;
+        if (king == null) {
+            return true;
+        }
+        Piece captured = board[endX][startY];
+        board[startX][startY] = null;
+        board[endX][startY] = null;
+        board[endX][endY] = pawn;
+        boolean attacked = isSquareThreatened(king.getPieceX(), king.getPieceY(), !whiteTurn);
+        board[endX][endY] = null;
+        board[endX][startY] = captured;
+        board[startX][startY] = pawn;
+        return !attacked;
+    }
+
+    /**
+     * Whether a piece of the colour {@code isWhite} attacks square (x, y). Works outward from
+     * the square along the pawn, knight, king and sliding piece patterns, so nothing is
+     * allocated.
+     */
+    public boolean isSquareThreatened(int x, int y, boolean isWhite) {
+        // A white pawn attacks the squares diagonally above it, towards row 0
+        int pawnY = isWhite ? y + 1 : y - 1;
+        if (isAttacker(x - 1, pawnY, isWhite, Pawn.class) || isAttacker(x + 1, pawnY, isWhite, Pawn.class)) {
+            return true;
+        }
+        for (int i = 0; i < 8; i++) {
+            if (isAttacker(x + KNIGHT_X[i], y + KNIGHT_Y[i], isWhite, Knight.class)
+                    || isAttacker(x + DIRECTION_X[i], y + DIRECTION_Y[i], isWhite, King.class)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < 8; i++) {
+            int dx = DIRECTION_X[i];
+            int dy = DIRECTION_Y[i];
+            int toX = x + dx;
+            int toY = y + dy;
+            while (toX >= 0 && toX < 8 && toY >= 0 && toY < 8) {
+                Piece piece = board[toX][toY];
+                if (piece != null) {
+                    if (piece.isWhite() == isWhite && (piece instanceof Queen
+                            || (dx == 0 || dy == 0 ? piece instanceof Rook : piece instanceof Bishop))) {
+                        return true;
                     }
+                    break;
                 }
+                toX += dx;
+                toY += dy;
             }
         }
+        return false;
+    }
+
+    private boolean isAttacker(int x, int y, boolean isWhite, Class<? extends Piece> type) {
+        if (x < 0 || x > 7 || y < 0 || y > 7) {
+            return false;
+        }
+        Piece piece = board[x][y];
+        return piece != null && piece.isWhite() == isWhite && piece.getClass() == type;
     }
-    return false;
-}
 
+    /**
+     * The game in standard algebraic notation, one full move per line, followed by the result.
+     */
     public String getGameInChessNotation() {
-        StringBuilder notation = new StringBuilder();
-        int moveCount = 1;
-        for (int i = 0; i < moveHistory.size(); i += 2) {
-            notation.append(moveCount).append(". ");
-            Move whiteMove = moveHistory.get(i);
-            notation.append(getMoveNotation(whiteMove));
-            if (isCheckAfterMove(whiteMove)) {
-                notation.append(isCheckmateAfterMove(whiteMove) ? "#" : "+");
-            }
-            notation.append(" ");
-            if (i + 1 < moveHistory.size()) {
-                Move blackMove = moveHistory.get(i + 1);
-                notation.append(getMoveNotation(blackMove));
-                if (isCheckAfterMove(blackMove)) {
-                    notation.append(isCheckmateAfterMove(blackMove) ? "#" : "+");
-                }
-                notation.append(" ");
+        List<String> sanMoves = getSanMoves();
+        StringBuilder notation = new StringBuilder(sanMoves.size() * 8 + 16);
+        for (int i = 0; i < sanMoves.size(); i++) {
+            if (i % 2 == 0) {
+                notation.append(i / 2 + 1).append(". ");
+            }
+            notation.append(sanMoves.get(i)).append(' ');
+            if (i % 2 == 1 || i == sanMoves.size() - 1) {
+                notation.append('\n');
             }
-            notation.append("\n");
-            moveCount++;
         }
 
         // Add the game result
@@ -236,79 +1305,96 @@ public boolean isCheckmate(boolean isWhite) {
         return notation.toString();
     }
 
-    private boolean isCheckAfterMove(Move move) {
-        Board tempBoard = new Board();
-        for (int i = 0; i < moveHistory.indexOf(move); i++) {
-            tempBoard.makeMove(new Move(moveHistory.get(i).getStartX(), moveHistory.get(i).getStartY(), moveHistory.get(i).getEndX(), moveHistory.get(i).getEndY(), moveHistory.get(i).getPieceMoved(), moveHistory.get(i).getPieceCaptured(), null));
-        }
-        tempBoard.makeMove(new Move(move.getStartX(), move.getStartY(), move.getEndX(), move.getEndY(), move.getPieceMoved(), move.getPieceCaptured(), null));
-        return tempBoard.isKingInCheck(!move.getPieceMoved().isWhite());
-    }
-
-    private boolean isCheckmateAfterMove(Move move) {
-        Board tempBoard = new Board();
-        for (int i = 0; i < moveHistory.indexOf(move); i++) {
-            tempBoard.makeMove(new Move(moveHistory.get(i).getStartX(), moveHistory.get(i).getStartY(), moveHistory.get(i).getEndX(), moveHistory.get(i).getEndY(), moveHistory.get(i).getPieceMoved(), moveHistory.get(i).getPieceCaptured(), null));
+    /**
+     * The moves played on this board in standard algebraic notation. The moves are replayed
+     * once from the start position; each one is written before it is made, for
+     * disambiguation, and its check or mate suffix after.
+     */
+    public List<String> getSanMoves() {
+        List<String> sanMoves = new ArrayList<>(moveCount);
+        StringBuilder notation = new StringBuilder(8);
+        MoveList legalMoves = new MoveList();
+        Board replay = startFen == null ? new Board() : fromFen(startFen);
+        for (int i = 0; i < moveCount; i++) {
+            int move = moveHistory[i];
+            replay.generateLegalMoves(legalMoves);
+            if (!legalMoves.contains(move)) {
+                throw new IllegalStateException("Move " + (i + 1) + " of the history cannot be replayed");
+            }
+            notation.setLength(0);
+            replay.appendMoveNotation(notation, move, legalMoves);
+            replay.makeMove(move);
+            if (replay.isKingInCheck(replay.whiteTurn)) {
+                notation.append(replay.isCheckmate(replay.whiteTurn) ? '#' : '+');
+            }
+            sanMoves.add(notation.toString());
         }
-        tempBoard.makeMove(new Move(move.getStartX(), move.getStartY(), move.getEndX(), move.getEndY(), move.getPieceMoved(), move.getPieceCaptured(), null));
-        return tempBoard.isCheckmate(!move.getPieceMoved().isWhite());
+        return sanMoves;
     }
 
-    private String getMoveNotation(Move move) {
-        Piece pieceMoved = move.getPieceMoved();
-        String pieceNotation = getPieceNotation(pieceMoved);
-        String captureNotation = move.getPieceCaptured() != null ? "x" : "";
-        String destination = getSquareNotation(move.getEndX(), move.getEndY());
+    // SAN of a move about to be made on this board, without the check suffix
+    private void appendMoveNotation(StringBuilder notation, int move, MoveList legalMoves) {
+        int from = BitBoard.moveFrom(move);
+        int to = BitBoard.moveTo(move);
+        int startX = from & 7;
 
         // Check for castling
-        if (pieceMoved instanceof King && Math.abs(move.getStartX() - move.getEndX()) == 2) {
-            return move.getEndX() > move.getStartX() ? "O-O" : "O-O-O";
+        if ((move & BitBoard.FLAG_CASTLING) != 0) {
+            notation.append((to & 7) > startX ? "O-O" : "O-O-O");
+            return;
         }
 
+        Piece pieceMoved = board[startX][from >>> 3];
+        boolean capture = BitBoard.isCapture(move);
+        if (pieceMoved instanceof Pawn) {
+            if (capture) {
+                notation.append(fileLetter(startX));
+            }
+        } else {
+            notation.append(getPieceNotation(pieceMoved));
+            appendDisambiguation(notation, move, legalMoves);
+        }
+        if (capture) {
+            notation.append('x');
+        }
+        notation.append(fileLetter(to & 7)).append(rankDigit(to >>> 3));
+
         // Check for pawn promotion
-        if (pieceMoved instanceof Pawn && (move.getEndY() == 0 || move.getEndY() == 7)) {
-            String promotionPiece = "";  // Add this line
-            // Add the following lines
-            if (move.getPromotionPiece() instanceof Queen) {
-                promotionPiece = "Q";
-            } else if (move.getPromotionPiece() instanceof Rook) {
-                promotionPiece = "R";
-            } else if (move.getPromotionPiece() instanceof Bishop) {
-                promotionPiece = "B";
-            } else if (move.getPromotionPiece() instanceof Knight) {
-                promotionPiece = "N";
-            }
-            return pieceNotation + captureNotation + destination + "=" + promotionPiece;  // Modify this line
-        }
-
-        // Check for ambiguity
-        for (int x = 0; x < 8; x++) {
-            for (int y = 0; y < 8; y++) {
-                Piece piece = getPiece(x, y);
-                if (piece == null || !piece.getClass().equals(pieceMoved.getClass()) || piece.isWhite() != pieceMoved.isWhite() || x == move.getStartX() && y == move.getStartY()) {
-                    continue;
-                }
-                List<Move> moves = piece.getPossibleMoves(this, x, y);
-                for (Move possibleMove : moves) {
-                    if (possibleMove.getEndX() != move.getEndX() || possibleMove.getEndY() != move.getEndY()) {
-                        continue;
-                    }
-                    // If the pieces are in the same row
-                    if (move.getStartX() == x) {
-                        pieceNotation += getSquareNotation(move.getStartX(), move.getStartY()).charAt(0);
-                    }
-                    // If the pieces are in the same column
-                    else if (move.getStartY() == y) {
-                        pieceNotation += getSquareNotation(move.getStartX(), move.getStartY()).charAt(1);
-                    }
-                    // If the pieces are in different rows and columns
-                    else {
-                        pieceNotation += getSquareNotation(move.getStartX(), move.getStartY()).charAt(0);
-                    }
-                }
+        int promotion = BitBoard.movePromotion(move);
+        if (promotion != 0) {
+            notation.append('=').append("PNBRQK".charAt(promotion));
+        }
+    }
+
+    // File, rank or both of the start square when another piece of the same kind can legally
+    // reach the same square
+    private void appendDisambiguation(StringBuilder notation, int move, MoveList legalMoves) {
+        int from = BitBoard.moveFrom(move);
+        int to = BitBoard.moveTo(move);
+        Piece pieceMoved = board[from & 7][from >>> 3];
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int other = BitBoard.moveFrom(legalMoves.get(i));
+            if (BitBoard.moveTo(legalMoves.get(i)) != to || other == from
+                    || board[other & 7][other >>> 3].getClass() != pieceMoved.getClass()) {
+                continue;
             }
+            ambiguous = true;
+            sameFile |= (other & 7) == (from & 7);
+            sameRank |= (other >>> 3) == (from >>> 3);
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            notation.append(fileLetter(from & 7));
+        } else if (!sameRank) {
+            notation.append(rankDigit(from >>> 3));
+        } else {
+            notation.append(fileLetter(from & 7)).append(rankDigit(from >>> 3));
         }
-        return pieceNotation + captureNotation + destination;
     }
 
     private String getPieceNotation(Piece piece) {
@@ -322,25 +1408,43 @@ public boolean isCheckmate(boolean isWhite) {
         };
     }
 
-    private String getSquareNotation(int x, int y) {
-        return (char) ('a' + y) + Integer.toString(8 - x);
+    // x is the file from a, y the row from rank 8
+    private static char fileLetter(int x) {
+        return (char) ('a' + x);
+    }
+
+    private static char rankDigit(int y) {
+        return (char) ('8' - y);
     }
 
     public void restartGame() {
         clearPiecesFromBoard();
-        moveHistory.clear();
+        moveCount = 0;
+        Arrays.fill(undoPieceMoved, null);
+        Arrays.fill(undoCaptured, null);
+        Arrays.fill(promotedPieces, null);
+        undoCount = 0;
         setupInitialBoard();
         setWhiteTurn(true);
-        lastMove = null;
+        enPassantSquare = -1;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        startFen = null;
+        hashKey = computeHashKey();
+        computeEvaluation();
     }
 
     public void placePiece(Piece piece, int x, int y) {
         board[x][y] = piece;
         piece.setPosition(x, y);
+        hashKey = computeHashKey();
+        computeEvaluation();
     }
 
     public void removePiece(int x, int y) {
         board[x][y] = null;
+        hashKey = computeHashKey();
+        computeEvaluation();
     }
 
     private void clearPiecesFromBoard(){
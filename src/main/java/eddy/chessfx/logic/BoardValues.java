@@ -67,4 +67,27 @@ public class BoardValues {
             -30, -40, -40, -50, -50, -40, -40, -30,
             -30, -40, -40, -50, -50, -40, -40, -30
     };
+
+    // Endgame tables: pawns gain value as they advance, the king belongs in the centre
+    public static final int[] PAWN_ENDGAME = {
+            0,  0,  0,  0,  0,  0,  0,  0,
+            0,  0,  0,  0,  0,  0,  0,  0,
+            5,  5,  5,  5,  5,  5,  5,  5,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            35, 35, 35, 35, 35, 35, 35, 35,
+            60, 60, 60, 60, 60, 60, 60, 60,
+            0,  0,  0,  0,  0,  0,  0,  0
+    };
+
+    public static final int[] KING_ENDGAME = {
+            -50, -30, -30, -30, -30, -30, -30, -50,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -50, -40, -30, -20, -20, -30, -40, -50
+    };
 }
@@ -0,0 +1,86 @@
+package eddy.chessfx.logic;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single-threaded search with its own transposition table and, optionally, its own
+ * evaluation weights. Unlike {@link AI}, which shares one table and the global weights and
+ * runs one search at a time, any number of engines can search at once, e.g. the games of a
+ * match. An engine itself is used by one thread at a time.
+ */
+public class Engine {
+    private final TranspositionTable table;
+    private final Evaluation.Tables evaluationTables;  // Null to evaluate with the current global weights
+
+    // Statistics of the last search
+    private long nodes;
+    private int completedDepth;
+    private int score;
+
+    /**
+     * An engine with a table of {@code hashMb} megabytes that evaluates with {@code params}, or
+     * with the weights set on {@link Evaluation} if {@code params} is null.
+     */
+    public Engine(int hashMb, EvaluationParams params) {
+        this.table = new TranspositionTable(hashMb);
+        this.evaluationTables = params == null ? null : new Evaluation.Tables(params);
+    }
+
+    /**
+     * Forgets everything learned in earlier searches, to be called before a new game.
+     */
+    public void newGame() {
+        table.clear();
+    }
+
+    /**
+     * Searches {@code board} for the side to move within {@code limits} and returns the best
+     * move packed as in {@link BitBoard}, or 0 if the side to move has no legal move. The
+     * board is not changed.
+     */
+    public int search(Board board, SearchLimits limits) {
+        boolean isWhite = board.isWhiteTurn();
+        table.newSearch();
+        Board position = new Board(board);
+        if (evaluationTables != null) {
+            position.setEvaluationTables(evaluationTables);
+        }
+        Search search = new Search(position, isWhite, limits, table, new AtomicBoolean(), 0,
+                System.currentTimeMillis(), System.nanoTime());
+        search.run();
+        nodes = search.getNodes() + search.getQuiescenceNodes();
+        completedDepth = search.getCompletedDepth();
+        score = search.getBestScore();
+        return search.getBestMove();
+    }
+
+    /**
+     * Nodes visited by the last search, quiescence included.
+     */
+    public long getLastSearchNodes() {
+        return nodes;
+    }
+
+    public int getLastSearchDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Score of the last search in centipawns for the side to move, mates beyond
+     * {@link #isMateScore(int)}.
+     */
+    public int getLastSearchScore() {
+        return score;
+    }
+
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) >= AI.MATE_THRESHOLD;
+    }
+
+    /**
+     * Plies from the root to the mate a mate score stands for.
+     */
+    public static int pliesToMate(int score) {
+        return AI.CHECKMATE_VALUE - Math.abs(score);
+    }
+}
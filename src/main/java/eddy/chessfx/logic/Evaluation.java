@@ -0,0 +1,166 @@
+package eddy.chessfx.logic;
+
+import eddy.chessfx.pieces.Piece;
+
+/**
+ * Tapered piece-square evaluation. Every piece on every square has one packed value holding
+ * a middlegame and an endgame score; {@link Board} keeps their sum and the game phase up to
+ * date in makeMove/unmakeMove, so evaluating a position costs a few arithmetic operations.
+ * <p>
+ * The tables are built from the current {@link EvaluationParams} and fold in all terms of
+ * the reference evaluator {@link AI#evaluateBoardReference}: material, piece-square tables,
+ * centre control, development and king shelter. Values are signed from white's side and
+ * indexed by {@code colour * 6 + type} as in {@link BitBoard} and by square {@code y * 8 + x}.
+ */
+public final class Evaluation {
+    // Replaced by setParams; a search sees the tables current when its boards were copied
+    private static volatile Tables current = new Tables(EvaluationParams.defaults());
+
+    /**
+     * The tables built from one set of weights. A board sums the current tables unless it has
+     * been given its own, so engines with different weights can search at the same time.
+     */
+    public static final class Tables {
+        final EvaluationParams params;
+        final int[][] pieceSquare;
+        final int[] phaseWeights;
+        final int totalPhase;  // Phase of the initial material, all middlegame
+
+        public Tables(EvaluationParams params) {
+            this.params = params.copy();
+            this.pieceSquare = buildTables(this.params);
+            this.phaseWeights = this.params.phaseWeights.clone();
+            this.totalPhase = totalPhase(phaseWeights);
+        }
+
+        int pieceSquare(Piece piece, int x, int y) {
+            return pieceSquare[(piece.isWhite() ? 0 : 6) + BitBoard.pieceType(piece)][y * 8 + x];
+        }
+
+        int phaseWeight(Piece piece) {
+            return phaseWeights[BitBoard.pieceType(piece)];
+        }
+
+        int middlegameValue(int type) {
+            return params.middlegameValues[type];
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * Makes {@code params} the weights of all evaluations. Boards created before keep stale
+     * sums until copied, which the search does for every move.
+     */
+    public static synchronized void setParams(EvaluationParams params) {
+        current = new Tables(params);
+    }
+
+    /**
+     * A copy of the current weights.
+     */
+    public static EvaluationParams getParams() {
+        return current.params.copy();
+    }
+
+    static EvaluationParams currentParams() {
+        return current.params;
+    }
+
+    static Tables currentTables() {
+        return current;
+    }
+
+    /**
+     * Phase of the initial material with {@code phaseWeights}: eight pawns, two knights, bishops
+     * and rooks, a queen and a king per side. At least 1, so weights of 0 evaluate every
+     * position as an endgame.
+     */
+    static int totalPhase(int[] phaseWeights) {
+        int total = 16 * phaseWeights[BitBoard.PAWN]
+                + 4 * (phaseWeights[BitBoard.KNIGHT] + phaseWeights[BitBoard.BISHOP] + phaseWeights[BitBoard.ROOK])
+                + 2 * (phaseWeights[BitBoard.QUEEN] + phaseWeights[BitBoard.KING]);
+        return Math.max(1, total);
+    }
+
+    private static int[][] buildTables(EvaluationParams params) {
+        int[][] tables = new int[12][64];
+        for (int type = BitBoard.PAWN; type <= BitBoard.KING; type++) {
+            for (int square = 0; square < 64; square++) {
+                int x = square & 7;
+                int y = square >>> 3;
+                int middlegame = params.middlegameValues[type];
+                if ((x == 3 || x == 4) && (y == 3 || y == 4)) {
+                    middlegame += params.centerBonus;
+                }
+                if (type == BitBoard.KNIGHT || type == BitBoard.BISHOP) {
+                    middlegame += params.developmentBonus;
+                }
+                if (type == BitBoard.KING) {
+                    middlegame += (x > 1 && x < 6) ? -params.kingShelterBonus : params.kingShelterBonus;
+                }
+                int endgame = params.endgameValues[type];
+                // White reads the tables from the other end
+                tables[type][square] = pack(middlegame + params.middlegameTables[type][63 - square],
+                        endgame + params.endgameTables[type][63 - square]);
+                tables[6 + type][square] = -pack(middlegame + params.middlegameTables[type][square],
+                        endgame + params.endgameTables[type][square]);
+            }
+        }
+        return tables;
+    }
+
+    // The endgame score sits in the upper half; sums of packed values stay packed as long as
+    // both halves fit in 16 bits
+    static int pack(int middlegame, int endgame) {
+        return (endgame << 16) + middlegame;
+    }
+
+    static int middlegame(int packed) {
+        return (short) packed;
+    }
+
+    static int endgame(int packed) {
+        return (packed + 0x8000) >> 16;
+    }
+
+    /**
+     * Blends the middlegame and endgame scores by {@code phase}, from {@code totalPhase} (all
+     * middlegame) down to 0 (all endgame).
+     */
+    static int taper(int middlegame, int endgame, int phase, int totalPhase) {
+        phase = Math.min(phase, totalPhase);  // Promotions can push the phase past the start
+        return (middlegame * phase + endgame * (totalPhase - phase)) / totalPhase;
+    }
+
+    /**
+     * Evaluation of {@code board} from the side of {@code isWhite}, read from the sums the
+     * board keeps incrementally.
+     */
+    public static int evaluate(Board board, boolean isWhite) {
+        int packed = board.packedEvaluation();
+        int score = taper(middlegame(packed), endgame(packed), board.gamePhase(), board.evaluationTables().totalPhase);
+        return isWhite ? score : -score;
+    }
+
+    /**
+     * The same evaluation summed over the pieces of a {@link BitBoard}.
+     */
+    public static int evaluate(BitBoard board, boolean isWhite) {
+        Tables tables = current;
+        int[][] pieceSquare = tables.pieceSquare;
+        int[] phaseWeights = tables.phaseWeights;
+        int packed = 0;
+        int phase = 0;
+        for (int square = 0; square < 64; square++) {
+            int type = board.getPieceType(square);
+            if (type != BitBoard.NO_PIECE) {
+                packed += pieceSquare[board.getPieceColor(square) * 6 + type][square];
+                phase += phaseWeights[type];
+            }
+        }
+        int score = taper(middlegame(packed), endgame(packed), phase, tables.totalPhase);
+        return isWhite ? score : -score;
+    }
+}
@@ -0,0 +1,124 @@
+package eddy.chessfx.logic;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Weights of the static evaluation: material and piece-square tables for the middlegame and
+ * the endgame, phase weights and the centre, development and king shelter bonuses.
+ * <p>
+ * Tables are in {@link BoardValues} orientation: black reads square {@code y * 8 + x}, white
+ * reads {@code 63 - (y * 8 + x)}. Arrays are indexed by {@link BitBoard} piece type.
+ * <p>
+ * The file format is a properties file with whitespace separated numbers, e.g.
+ * {@code middlegame.values = 100 300 300 500 900 10000} and one 64-entry line per table such
+ * as {@code endgame.table.king}. Missing keys keep their default value.
+ */
+public class EvaluationParams {
+    static final String[] PIECE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+
+    final int[] middlegameValues = {100, 300, 300, 500, 900, 10000};
+    final int[] endgameValues = {120, 290, 310, 530, 950, 10000};
+    final int[] phaseWeights = {0, 1, 1, 2, 4, 0};
+    final int[][] middlegameTables = {BoardValues.PAWN.clone(), BoardValues.KNIGHT.clone(), BoardValues.BISHOP.clone(),
+            BoardValues.ROOK.clone(), BoardValues.QUEEN.clone(), BoardValues.KING.clone()};
+    final int[][] endgameTables = {BoardValues.PAWN_ENDGAME.clone(), BoardValues.KNIGHT.clone(), BoardValues.BISHOP.clone(),
+            BoardValues.ROOK.clone(), BoardValues.QUEEN.clone(), BoardValues.KING_ENDGAME.clone()};
+    int centerBonus = 10;  // Any piece on d4, e4, d5 or e5, middlegame only
+    int developmentBonus = 5;  // Every knight and bishop, middlegame only
+    int kingShelterBonus = 20;  // King on the a, b, g or h file, or minus this elsewhere; middlegame only
+
+    /**
+     * The built-in weights.
+     */
+    public static EvaluationParams defaults() {
+        return new EvaluationParams();
+    }
+
+    public static EvaluationParams load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        EvaluationParams params = new EvaluationParams();
+        read(properties, "middlegame.values", params.middlegameValues);
+        read(properties, "endgame.values", params.endgameValues);
+        read(properties, "phase.weights", params.phaseWeights);
+        for (int type = 0; type < PIECE_NAMES.length; type++) {
+            read(properties, "middlegame.table." + PIECE_NAMES[type], params.middlegameTables[type]);
+            read(properties, "endgame.table." + PIECE_NAMES[type], params.endgameTables[type]);
+        }
+        params.centerBonus = readBonus(properties, "bonus.center", params.centerBonus);
+        params.developmentBonus = readBonus(properties, "bonus.development", params.developmentBonus);
+        params.kingShelterBonus = readBonus(properties, "bonus.kingShelter", params.kingShelterBonus);
+        return params;
+    }
+
+    private static void read(Properties properties, String key, int[] values) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return;
+        }
+        String[] numbers = value.trim().split("\\s+");
+        if (numbers.length != values.length) {
+            throw new IllegalArgumentException(key + " needs " + values.length + " values, found " + numbers.length);
+        }
+        for (int i = 0; i < numbers.length; i++) {
+            values[i] = Integer.parseInt(numbers[i]);
+        }
+    }
+
+    private static int readBonus(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public void save(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("# ChessFx evaluation parameters\n");
+            write(writer, "middlegame.values", middlegameValues);
+            write(writer, "endgame.values", endgameValues);
+            write(writer, "phase.weights", phaseWeights);
+            writer.write("bonus.center = " + centerBonus + "\n");
+            writer.write("bonus.development = " + developmentBonus + "\n");
+            writer.write("bonus.kingShelter = " + kingShelterBonus + "\n");
+            for (int type = 0; type < PIECE_NAMES.length; type++) {
+                write(writer, "middlegame.table." + PIECE_NAMES[type], middlegameTables[type]);
+            }
+            for (int type = 0; type < PIECE_NAMES.length; type++) {
+                write(writer, "endgame.table." + PIECE_NAMES[type], endgameTables[type]);
+            }
+        }
+    }
+
+    // Tables are written eight numbers per line, continued with a backslash
+    private static void write(BufferedWriter writer, String key, int[] values) throws IOException {
+        writer.write(key + " =");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0 && i % 8 == 0) {
+                writer.write(" \\\n   ");
+            }
+            writer.write(" " + values[i]);
+        }
+        writer.write("\n");
+    }
+
+    public EvaluationParams copy() {
+        EvaluationParams copy = new EvaluationParams();
+        System.arraycopy(middlegameValues, 0, copy.middlegameValues, 0, middlegameValues.length);
+        System.arraycopy(endgameValues, 0, copy.endgameValues, 0, endgameValues.length);
+        System.arraycopy(phaseWeights, 0, copy.phaseWeights, 0, phaseWeights.length);
+        for (int type = 0; type < PIECE_NAMES.length; type++) {
+            System.arraycopy(middlegameTables[type], 0, copy.middlegameTables[type], 0, 64);
+            System.arraycopy(endgameTables[type], 0, copy.endgameTables[type], 0, 64);
+        }
+        copy.centerBonus = centerBonus;
+        copy.developmentBonus = developmentBonus;
+        copy.kingShelterBonus = kingShelterBonus;
+        return copy;
+    }
+}
@@ -0,0 +1,359 @@
+package eddy.chessfx.logic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Texel-style offline tuner for {@link EvaluationParams}. Minimises the mean squared error
+ * between game results and the evaluation mapped to an expected score,
+ * {@code 1 / (1 + 10^(-K * eval / 400))}, with Adam gradient descent. The error and gradient
+ * are computed in parallel over chunks of the positions.
+ * <p>
+ * Each line of the positions file holds a FEN (only the piece placement is used) followed by
+ * the game result from white's side as {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or a number,
+ * optionally quoted or bracketed, e.g. {@code ... w - - 0 1 [0.5]} or {@code ... c9 "1-0";}.
+ * Lines starting with {@code #} are skipped. Quiet positions give the best results.
+ * <p>
+ * Run with {@code java eddy.chessfx.logic.EvaluationTuner <positions> <output> [iterations]
+ * [threads] [startParams]}; the tuned parameters are written to {@code output} and can be
+ * loaded with {@link EvaluationParams#load}.
+ */
+public class EvaluationTuner {
+    private static final double LEARNING_RATE = 1.0;  // Centipawns per step at the start of Adam
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    // Layout of the weight vector
+    private static final int MIDDLEGAME_VALUES = 0;
+    private static final int ENDGAME_VALUES = 6;
+    private static final int MIDDLEGAME_TABLES = 12;
+    private static final int ENDGAME_TABLES = MIDDLEGAME_TABLES + 6 * 64;
+    private static final int CENTER = ENDGAME_TABLES + 6 * 64;
+    private static final int DEVELOPMENT = CENTER + 1;
+    private static final int KING_SHELTER = CENTER + 2;
+    private static final int WEIGHTS = CENTER + 3;
+
+    private final List<Position> positions;
+    private final int threads;
+    private final ExecutorService pool;
+    private double k = 1.0;
+
+    // One labelled position: pieces as colour * 6 + type in the upper bits, square in the lower 6,
+    // and the phase as the share of the middlegame score, 1 with the initial material
+    private record Position(short[] pieces, double phase, double result) {
+    }
+
+    private EvaluationTuner(List<Position> positions, int threads) {
+        this.positions = positions;
+        this.threads = Math.max(1, threads);
+        this.pool = Executors.newFixedThreadPool(this.threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: EvaluationTuner <positions> <output> [iterations] [threads] [startParams]");
+            System.exit(2);
+        }
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        EvaluationParams start = args.length > 4 ? EvaluationParams.load(Paths.get(args[4])) : EvaluationParams.defaults();
+
+        long loadStart = System.nanoTime();
+        List<Position> positions = readPositions(Paths.get(args[0]), start.phaseWeights);
+        System.out.println("Read " + positions.size() + " positions in " + (System.nanoTime() - loadStart) / 1_000_000 + " ms");
+
+        EvaluationTuner tuner = new EvaluationTuner(positions, threads);
+        try {
+            EvaluationParams tuned = tuner.tune(start, iterations);
+            tuned.save(Paths.get(args[1]));
+            System.out.println("Wrote " + args[1]);
+        } finally {
+            tuner.pool.shutdown();
+        }
+    }
+
+    private static List<Position> readPositions(Path path, int[] phaseWeights) throws IOException {
+        List<Position> positions = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(path)) {
+            lines.forEach(line -> {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    positions.add(parse(trimmed, phaseWeights));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return positions;
+    }
+
+    private static Position parse(String line, int[] phaseWeights) {
+        int end = line.indexOf(' ');
+        if (end < 0) {
+            throw new IllegalArgumentException("No result in \"" + line + "\"");
+        }
+        short[] pieces = new short[32];
+        int count = 0;
+        int phase = 0;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == '/') {
+                x = 0;
+                y++;
+            } else if (c >= '1' && c <= '8') {
+                x += c - '0';
+            } else {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+                if (type < 0 || x > 7 || y > 7) {
+                    throw new IllegalArgumentException("Bad piece placement in \"" + line + "\"");
+                }
+                if (count == pieces.length) {
+                    pieces = Arrays.copyOf(pieces, count * 2);
+                }
+                int color = Character.isUpperCase(c) ? BitBoard.WHITE : BitBoard.BLACK;
+                pieces[count++] = (short) ((color * 6 + type) << 6 | (y * 8 + x));
+                phase += phaseWeights[type];
+                x++;
+            }
+        }
+        String result = line.substring(line.lastIndexOf(' ') + 1).replaceAll("[\\[\\]\";]", "");
+        int totalPhase = Evaluation.totalPhase(phaseWeights);
+        return new Position(Arrays.copyOf(pieces, count), (double) Math.min(phase, totalPhase) / totalPhase, parseResult(result, line));
+    }
+
+    private static double parseResult(String result, String line) {
+        return switch (result) {
+            case "1-0" -> 1.0;
+            case "0-1" -> 0.0;
+            case "1/2-1/2", "=" -> 0.5;
+            default -> {
+                try {
+                    yield Double.parseDouble(result);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("No result in \"" + line + "\"", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Fits the scaling constant K to the start parameters, then runs {@code iterations} steps
+     * of Adam over all weights except the phase weights.
+     */
+    private EvaluationParams tune(EvaluationParams start, int iterations) {
+        double[] weights = toWeights(start);
+        k = fitK(weights);
+        double error = computeError(weights);
+        System.out.printf("K = %.3f, initial error %.6f%n", k, error);
+
+        double[] m = new double[WEIGHTS];
+        double[] v = new double[WEIGHTS];
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            double[] gradient = computeGradient(weights);
+            for (int i = 0; i < WEIGHTS; i++) {
+                m[i] = BETA1 * m[i] + (1 - BETA1) * gradient[i];
+                v[i] = BETA2 * v[i] + (1 - BETA2) * gradient[i] * gradient[i];
+                double mHat = m[i] / (1 - Math.pow(BETA1, iteration));
+                double vHat = v[i] / (1 - Math.pow(BETA2, iteration));
+                weights[i] -= LEARNING_RATE * mHat / (Math.sqrt(vHat) + EPSILON);
+            }
+            if (iteration % 50 == 0 || iteration == iterations) {
+                System.out.printf("Iteration %d: error %.6f%n", iteration, computeError(weights));
+            }
+        }
+        return toParams(weights, start);
+    }
+
+    // Golden-section search; the error is convex enough in K
+    private double fitK(double[] weights) {
+        double low = 0.05;
+        double high = 5.0;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 40; i++) {
+            double k1 = high - ratio * (high - low);
+            double k2 = low + ratio * (high - low);
+            k = k1;
+            double error1 = computeError(weights);
+            k = k2;
+            double error2 = computeError(weights);
+            if (error1 < error2) {
+                high = k2;
+            } else {
+                low = k1;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    private double sigmoid(double evaluation) {
+        return 1 / (1 + Math.exp(-k * evaluation * Math.log(10) / 400));
+    }
+
+    private double computeError(double[] weights) {
+        double[] total = runChunks(weights, false);
+        return total[0] / positions.size();
+    }
+
+    private double[] computeGradient(double[] weights) {
+        double[] gradient = runChunks(weights, true);
+        for (int i = 0; i < WEIGHTS; i++) {
+            gradient[i] /= positions.size();
+        }
+        return gradient;
+    }
+
+    // Sums the squared error (index 0) or the gradient over all positions, one chunk per thread
+    private double[] runChunks(double[] weights, boolean gradient) {
+        List<Future<double[]>> futures = new ArrayList<>();
+        int chunk = (positions.size() + threads - 1) / threads;
+        for (int start = 0; start < positions.size(); start += chunk) {
+            int from = start;
+            int to = Math.min(positions.size(), start + chunk);
+            futures.add(pool.submit(() -> gradient ? chunkGradient(weights, from, to) : new double[]{chunkError(weights, from, to)}));
+        }
+        double[] total = new double[gradient ? WEIGHTS : 1];
+        try {
+            for (Future<double[]> future : futures) {
+                double[] part = future.get();
+                for (int i = 0; i < total.length; i++) {
+                    total[i] += part[i];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tuning interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tuning failed", e.getCause());
+        }
+        return total;
+    }
+
+    private double chunkError(double[] weights, int from, int to) {
+        double error = 0;
+        for (int i = from; i < to; i++) {
+            Position position = positions.get(i);
+            double difference = position.result() - sigmoid(evaluate(weights, position));
+            error += difference * difference;
+        }
+        return error;
+    }
+
+    private double[] chunkGradient(double[] weights, int from, int to) {
+        double[] gradient = new double[WEIGHTS];
+        double scale = k * Math.log(10) / 400;
+        for (int i = from; i < to; i++) {
+            Position position = positions.get(i);
+            double expected = sigmoid(evaluate(weights, position));
+            // Derivative of the squared error with respect to the evaluation
+            double slope = -2 * (position.result() - expected) * expected * (1 - expected) * scale;
+            double middlegame = slope * position.phase();
+            double endgame = slope * (1 - position.phase());
+            for (short code : position.pieces()) {
+                int piece = code >>> 6;
+                int square = code & 63;
+                int type = piece % 6;
+                boolean white = piece < 6;
+                double sign = white ? 1 : -1;
+                int index = white ? 63 - square : square;
+                gradient[MIDDLEGAME_VALUES + type] += sign * middlegame;
+                gradient[MIDDLEGAME_TABLES + type * 64 + index] += sign * middlegame;
+                gradient[ENDGAME_VALUES + type] += sign * endgame;
+                gradient[ENDGAME_TABLES + type * 64 + index] += sign * endgame;
+                if (isCenter(square)) {
+                    gradient[CENTER] += sign * middlegame;
+                }
+                if (type == BitBoard.KNIGHT || type == BitBoard.BISHOP) {
+                    gradient[DEVELOPMENT] += sign * middlegame;
+                }
+                if (type == BitBoard.KING) {
+                    gradient[KING_SHELTER] += sign * shelter(square) * middlegame;
+                }
+            }
+        }
+        return gradient;
+    }
+
+    // Same terms as Evaluation, without integer rounding
+    private static double evaluate(double[] weights, Position position) {
+        double middlegame = 0;
+        double endgame = 0;
+        for (short code : position.pieces()) {
+            int piece = code >>> 6;
+            int square = code & 63;
+            int type = piece % 6;
+            boolean white = piece < 6;
+            int index = white ? 63 - square : square;
+            double mg = weights[MIDDLEGAME_VALUES + type] + weights[MIDDLEGAME_TABLES + type * 64 + index];
+            if (isCenter(square)) {
+                mg += weights[CENTER];
+            }
+            if (type == BitBoard.KNIGHT || type == BitBoard.BISHOP) {
+                mg += weights[DEVELOPMENT];
+            }
+            if (type == BitBoard.KING) {
+                mg += shelter(square) * weights[KING_SHELTER];
+            }
+            double eg = weights[ENDGAME_VALUES + type] + weights[ENDGAME_TABLES + type * 64 + index];
+            middlegame += white ? mg : -mg;
+            endgame += white ? eg : -eg;
+        }
+        return middlegame * position.phase() + endgame * (1 - position.phase());
+    }
+
+    private static boolean isCenter(int square) {
+        int x = square & 7;
+        int y = square >>> 3;
+        return (x == 3 || x == 4) && (y == 3 || y == 4);
+    }
+
+    private static int shelter(int square) {
+        int x = square & 7;
+        return (x > 1 && x < 6) ? -1 : 1;
+    }
+
+    private static double[] toWeights(EvaluationParams params) {
+        double[] weights = new double[WEIGHTS];
+        for (int type = 0; type < 6; type++) {
+            weights[MIDDLEGAME_VALUES + type] = params.middlegameValues[type];
+            weights[ENDGAME_VALUES + type] = params.endgameValues[type];
+            for (int square = 0; square < 64; square++) {
+                weights[MIDDLEGAME_TABLES + type * 64 + square] = params.middlegameTables[type][square];
+                weights[ENDGAME_TABLES + type * 64 + square] = params.endgameTables[type][square];
+            }
+        }
+        weights[CENTER] = params.centerBonus;
+        weights[DEVELOPMENT] = params.developmentBonus;
+        weights[KING_SHELTER] = params.kingShelterBonus;
+        return weights;
+    }
+
+    private static EvaluationParams toParams(double[] weights, EvaluationParams start) {
+        EvaluationParams params = start.copy();
+        for (int type = 0; type < 6; type++) {
+            params.middlegameValues[type] = (int) Math.round(weights[MIDDLEGAME_VALUES + type]);
+            params.endgameValues[type] = (int) Math.round(weights[ENDGAME_VALUES + type]);
+            for (int square = 0; square < 64; square++) {
+                params.middlegameTables[type][square] = (int) Math.round(weights[MIDDLEGAME_TABLES + type * 64 + square]);
+                params.endgameTables[type][square] = (int) Math.round(weights[ENDGAME_TABLES + type * 64 + square]);
+            }
+        }
+        params.centerBonus = (int) Math.round(weights[CENTER]);
+        params.developmentBonus = (int) Math.round(weights[DEVELOPMENT]);
+        params.kingShelterBonus = (int) Math.round(weights[KING_SHELTER]);
+        return params;
+    }
+}
@@ -0,0 +1,194 @@
+package eddy.chessfx.logic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Microbenchmarks of the hot paths of {@link Board} and the search, run the way JMH runs them:
+ * warm-up iterations, then measurement iterations of a fixed duration, reporting the mean
+ * time per operation and the half-width of its 99.9% confidence interval.
+ * <p>
+ * Benchmarks: perft on {@link Board} at depth 1 to {@code maxPerftDepth} from the start and
+ * Kiwipete positions, legal move generation, make/unmake of every legal move, board copy, {@code isKingInCheck},
+ * {@code isCheckmate}, the incremental {@link Evaluation} against the full-rescan reference
+ * evaluator, and a fixed-depth {@link AI#findBestMove} on one thread with a cleared
+ * transposition table. Results can be written as JSON in the layout of JMH's {@code -rf json}
+ * output. Given an earlier results file, a benchmark fails the run if it is more than
+ * {@value #REGRESSION_PERCENT}% slower than its baseline and the two confidence intervals do
+ * not overlap.
+ * <p>
+ * Run with {@code java eddy.chessfx.logic.HotPathBenchmark [maxPerftDepth=3] [iterationMs=500]
+ * [results.json] [baseline.json]}; use "-" to leave out the results file.
+ */
+public class HotPathBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final double STUDENT_T_999 = 8.610;  // Two-sided 99.9% quantile for 4 degrees of freedom
+    private static final int REGRESSION_PERCENT = 10;
+    private static final int SEARCH_DEPTH = 4;
+    private static final int PERFT_POSITIONS = 2;  // Start and Kiwipete from the perft suite
+    private static final int[] POSITIONS = {0, 1, 2};  // Start, Kiwipete and a rook endgame
+    private static final Pattern BASELINE_ENTRY = Pattern.compile(
+            "\"benchmark\"\\s*:\\s*\"([^\"]+)\"[^{]*\\{\\s*\"score\"\\s*:\\s*([-0-9.eE+]+),\\s*\"scoreError\"\\s*:\\s*([-0-9.eE+]+)");
+
+    private static long sink;  // Consumes every result so the JIT cannot drop the measured work
+
+    private record Result(String name, double score, double error, double[] iterations) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxPerftDepth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        long iterationNanos = (args.length > 1 ? Long.parseLong(args[1]) : 500) * 1_000_000L;
+        Path resultsPath = args.length > 2 && !args[2].equals("-") ? Path.of(args[2]) : null;
+        Path baselinePath = args.length > 3 ? Path.of(args[3]) : null;
+
+        AI.setVerbose(false);
+        AI.setThreads(1);
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-36s %16s %14s%n", "benchmark", "ns/op", "error");
+
+        for (int position = 0; position < PERFT_POSITIONS; position++) {
+            String fen = Perft.SUITE_FENS[position];
+            for (int depth = 1; depth <= maxPerftDepth; depth++) {
+                Board board = Board.fromFen(fen);
+                int perftDepth = depth;
+                run(results, "perft." + Perft.SUITE_NAMES[position] + ".d" + depth, 1, iterationNanos,
+                        () -> Perft.perft(board, perftDepth));
+            }
+        }
+
+        for (int position : POSITIONS) {
+            String name = Perft.SUITE_NAMES[position];
+            Board board = Board.fromFen(Perft.SUITE_FENS[position]);
+            MoveList moves = new MoveList();
+            board.generateLegalMoves(moves);
+            run(results, "generateLegalMoves." + name, 1, iterationNanos, () -> {
+                board.generateLegalMoves(moves);
+                return moves.size();
+            });
+            run(results, "makeUnmake." + name, moves.size(), iterationNanos, () -> {
+                long hash = 0;
+                for (int i = 0; i < moves.size(); i++) {
+                    board.makeMove(moves.get(i));
+                    hash ^= board.hashKey();
+                    board.unmakeMove();
+                }
+                return hash;
+            });
+            run(results, "copy." + name, 1, iterationNanos, () -> new Board(board).hashKey());
+            run(results, "isKingInCheck." + name, 1, iterationNanos, () -> board.isKingInCheck(board.isWhiteTurn()) ? 1 : 0);
+            run(results, "isCheckmate." + name, 1, iterationNanos, () -> board.isCheckmate(board.isWhiteTurn()) ? 1 : 0);
+            run(results, "evaluate." + name, 1, iterationNanos, () -> Evaluation.evaluate(board, true));
+            run(results, "evaluateReference." + name, 1, iterationNanos, () -> AI.evaluateBoardReference(board, true));
+            run(results, "findBestMove." + name + ".d" + SEARCH_DEPTH, 1, iterationNanos, () -> {
+                AI.getTranspositionTable().clear();
+                return AI.findBestMove(board, board.isWhiteTurn(), SEARCH_DEPTH).getPackedMove();
+            });
+        }
+
+        if (resultsPath != null) {
+            writeJson(resultsPath, results);
+            System.out.println("Results written to " + resultsPath);
+        }
+        if (baselinePath != null && compare(results, baselinePath) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void run(List<Result> results, String name, int operationsPerCall, long iterationNanos, LongSupplier benchmark) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(benchmark, iterationNanos);
+        }
+        double[] iterations = new double[MEASUREMENT_ITERATIONS];
+        double sum = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            iterations[i] = iteration(benchmark, iterationNanos) / operationsPerCall;
+            sum += iterations[i];
+        }
+        double mean = sum / MEASUREMENT_ITERATIONS;
+        double squares = 0;
+        for (double score : iterations) {
+            squares += (score - mean) * (score - mean);
+        }
+        double error = STUDENT_T_999 * Math.sqrt(squares / (MEASUREMENT_ITERATIONS - 1)) / Math.sqrt(MEASUREMENT_ITERATIONS);
+        results.add(new Result(name, mean, error, iterations));
+        System.out.printf(Locale.ROOT, "%-36s %16.1f %14.1f%n", name, mean, error);
+    }
+
+    // Calls the benchmark until the iteration time is used up, at least once; returns ns per call
+    private static double iteration(LongSupplier benchmark, long iterationNanos) {
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += benchmark.getAsLong();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return (double) elapsed / calls;
+    }
+
+    private static void writeJson(Path path, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            json.append("    {\n")
+                    .append("        \"benchmark\" : \"").append(HotPathBenchmark.class.getName()).append('.').append(result.name()).append("\",\n")
+                    .append("        \"mode\" : \"avgt\",\n")
+                    .append("        \"threads\" : 1,\n")
+                    .append("        \"warmupIterations\" : ").append(WARMUP_ITERATIONS).append(",\n")
+                    .append("        \"measurementIterations\" : ").append(MEASUREMENT_ITERATIONS).append(",\n")
+                    .append("        \"primaryMetric\" : {\n")
+                    .append("            \"score\" : ").append(format(result.score())).append(",\n")
+                    .append("            \"scoreError\" : ").append(format(result.error())).append(",\n")
+                    .append("            \"scoreUnit\" : \"ns/op\",\n")
+                    .append("            \"rawData\" : [[");
+            for (int j = 0; j < result.iterations().length; j++) {
+                json.append(j > 0 ? ", " : "").append(format(result.iterations()[j]));
+            }
+            json.append("]]\n        }\n    }").append(i < results.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("]\n");
+        Files.writeString(path, json);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    // Prints the change of every benchmark found in the baseline and returns the number of regressions
+    private static int compare(List<Result> results, Path baselinePath) throws IOException {
+        Map<String, double[]> baseline = new HashMap<>();
+        Matcher matcher = BASELINE_ENTRY.matcher(Files.readString(baselinePath));
+        while (matcher.find()) {
+            baseline.put(matcher.group(1), new double[]{Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(3))});
+        }
+        int regressions = 0;
+        System.out.printf("%nCompared with %s:%n", baselinePath);
+        for (Result result : results) {
+            double[] entry = baseline.get(HotPathBenchmark.class.getName() + '.' + result.name());
+            if (entry == null) {
+                continue;
+            }
+            double before = entry[0];
+            double change = 100 * (result.score() - before) / before;
+            boolean regression = change > REGRESSION_PERCENT && result.score() - result.error() > before + entry[1];
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-36s %16.1f -> %14.1f %+7.1f%%%s%n", result.name(), before, result.score(),
+                    change, regression ? "  REGRESSION" : "");
+        }
+        System.out.println(regressions + " regressions over " + REGRESSION_PERCENT + "%");
+        return regressions;
+    }
+}
@@ -2,6 +2,12 @@ package eddy.chessfx.logic;
 
 import eddy.chessfx.pieces.Piece;
 
+/**
+ * A move with the pieces it involves, for the user interface and the public API. The engine
+ * works with moves packed into an int as in {@link BitBoard} and converts with
+ * {@link Board#toMove(int)}. Moves are equal when they have the same squares and promotion
+ * piece type.
+ */
 public class Move {
     private final int startX;
     private final int startY;
@@ -33,4 +39,20 @@ public class Move {
     public boolean isCastlingMove() { return isCastlingMove; }
     public void setCastlingMove(boolean isCastlingMove) { this.isCastlingMove = isCastlingMove; }
     public void  setPromotionPiece(Piece promotionPiece) { this.promotionPiece = promotionPiece; }
+
+    // Move packed as from | to << 6 | promotion << 12: the BitBoard encoding without its flags
+    public int getPackedMove() {
+        int promotion = promotionPiece == null ? 0 : BitBoard.pieceType(promotionPiece);
+        return (startY * 8 + startX) | ((endY * 8 + endX) << 6) | (promotion << 12);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Move move && move.getPackedMove() == getPackedMove();
+    }
+
+    @Override
+    public int hashCode() {
+        return getPackedMove();
+    }
 }
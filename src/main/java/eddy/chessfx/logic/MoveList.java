@@ -0,0 +1,61 @@
+package eddy.chessfx.logic;
+
+/**
+ * Moves packed as in {@link BitBoard#encodeMove}, each with an int score for move ordering.
+ * A list holds the moves of one position and is refilled in place, so a search keeps one
+ * list per ply and allocates nothing while it runs.
+ */
+public class MoveList {
+    private final int[] moves = new int[BitBoard.MAX_MOVES];
+    private final int[] scores = new int[BitBoard.MAX_MOVES];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getScore(int index) {
+        return scores[index];
+    }
+
+    public void setScore(int index, int score) {
+        scores[index] = score;
+    }
+
+    /**
+     * Exchanges two moves together with their scores.
+     */
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+        int score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -0,0 +1,51 @@
+package eddy.chessfx.logic;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times {@link Board#getGameInChessNotation()} on a game of random legal moves.
+ * <p>
+ * Run with {@code java eddy.chessfx.logic.NotationBenchmark [plies] [repetitions]}.
+ */
+public class NotationBenchmark {
+
+    public static void main(String[] args) {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Board board = randomGame(plies);
+
+        long start = System.nanoTime();
+        String notation = board.getGameInChessNotation();
+        long first = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            notation = board.getGameInChessNotation();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(notation.substring(0, notation.indexOf('\n', notation.indexOf('\n') + 1)) + " ...");
+        System.out.printf("%d plies: first export %.2f ms, then %.3f ms per export over %d runs%n",
+                plies, first / 1e6, elapsed / 1e6 / repetitions, repetitions);
+    }
+
+    // Random games are replayed with new seeds until one lasts the requested number of plies
+    static Board randomGame(int plies) {
+        for (long seed = 1; ; seed++) {
+            Random random = new Random(seed);
+            Board board = new Board();
+            int ply = 0;
+            while (ply < plies) {
+                List<Move> moves = board.getLegalMoves();
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                ply++;
+            }
+            if (ply == plies) {
+                return board;
+            }
+        }
+    }
+}
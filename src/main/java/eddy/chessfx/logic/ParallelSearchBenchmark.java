@@ -0,0 +1,62 @@
+package eddy.chessfx.logic;
+
+/**
+ * Searches the benchmark positions to a fixed depth with 1, 2, 4, ... threads and reports
+ * the time to each depth, nodes per second and the speedup over one thread.
+ * <p>
+ * Run with {@code java eddy.chessfx.logic.ParallelSearchBenchmark [depth] [maxThreads] [hashMb]}.
+ */
+public class ParallelSearchBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int hashMb = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        AI.setHashSizeMb(hashMb);
+
+        StringBuilder header = new StringBuilder(String.format("%-8s", "threads"));
+        for (int d = 1; d <= depth; d++) {
+            header.append(String.format(" %9s", "ttd" + d + "(ms)"));
+        }
+        System.out.println(header.append(String.format(" %12s %12s %8s", "nodes", "nps", "speedup")));
+
+        measure(1, depth);  // Warm-up so the single-thread baseline is not measured before JIT compilation
+        double baseTime = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            long[] timeToDepth = measure(threads, depth);
+            long nodes = timeToDepth[0];
+            long nanos = timeToDepth[depth + 1];
+            if (threads == 1) {
+                baseTime = timeToDepth[depth];
+            }
+            StringBuilder line = new StringBuilder(String.format("%-8d", threads));
+            for (int d = 1; d <= depth; d++) {
+                line.append(String.format(" %9d", timeToDepth[d] / 1_000_000));
+            }
+            System.out.println(line.append(String.format(" %12d %12d %7.2fx", nodes, nodes * 1_000_000_000L / Math.max(1, nanos),
+                    baseTime / Math.max(1, timeToDepth[depth]))));
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+        AI.setThreads(1);
+    }
+
+    // Summed over all positions: index 0 holds the nodes, 1..depth the time to each depth and
+    // depth + 1 the total search time
+    private static long[] measure(int threads, int depth) {
+        AI.setThreads(threads);
+        long[] result = new long[depth + 2];
+        for (String position : SearchBenchmark.POSITIONS) {
+            Board board = SearchBenchmark.setupPosition(position);
+            AI.getTranspositionTable().clear();
+            AI.findBestMove(board, board.isWhiteTurn(), depth);
+            result[0] += AI.getLastSearchNodes();
+            result[depth + 1] += AI.getLastSearchNanos();
+            for (int d = 1; d <= depth; d++) {
+                result[d] += Math.max(0, AI.getLastSearchTimeToDepth(d));
+            }
+        }
+        return result;
+    }
+}
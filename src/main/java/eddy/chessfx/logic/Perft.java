@@ -0,0 +1,67 @@
+package eddy.chessfx.logic;
+
+/**
+ * Perft (move path enumeration): counts the leaf nodes of the legal move tree of
+ * {@link BitBoard} and {@link Board}, with the standard perft positions and their published
+ * node counts. {@code PerftTest} checks both implementations against them and
+ * {@link HotPathBenchmark} times the counting.
+ */
+public class Perft {
+    // The standard perft positions with their known node counts at depth 1..5
+    static final String[] SUITE_NAMES = {"start", "kiwipete", "endgame", "promotions", "middlegame", "symmetrical"};
+    static final String[] SUITE_FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"};
+    static final long[][] SUITE_NODES = {
+            {20, 400, 8902, 197281, 4865609},
+            {48, 2039, 97862, 4085603, 193690690},
+            {14, 191, 2812, 43238, 674624},
+            {6, 264, 9467, 422333, 15833292},
+            {44, 1486, 62379, 2103487, 89941194},
+            {46, 2079, 89890, 3894594, 164075551}};
+
+    public static long perft(BitBoard board, int depth) {
+        return perft(board, depth, new int[(depth + 1) * BitBoard.MAX_MOVES], 0);
+    }
+
+    private static long perft(BitBoard board, int depth, int[] moves, int start) {
+        int end = board.generateLegalMoves(moves, start);
+        if (depth == 1) {
+            return end - start;
+        }
+        long nodes = 0;
+        for (int i = start; i < end; i++) {
+            board.makeMove(moves[i]);
+            nodes += perft(board, depth - 1, moves, end);
+            board.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    public static long perft(Board board, int depth) {
+        MoveList[] moveLists = new MoveList[depth];
+        for (int i = 0; i < depth; i++) {
+            moveLists[i] = new MoveList();
+        }
+        return perft(board, depth, moveLists);
+    }
+
+    private static long perft(Board board, int depth, MoveList[] moveLists) {
+        MoveList moves = moveLists[depth - 1];
+        board.generateLegalMoves(moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += perft(board, depth - 1, moveLists);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,432 @@
+package eddy.chessfx.logic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * One search thread: iterative deepening alpha-beta on its own board copy. In the parallel
+ * search several instances search the same root and only share the transposition table;
+ * everything else, including the node and table counters, belongs to the instance.
+ * <p>
+ * Thread 0 is the main thread. Helpers may be stopped at any time through the shared stop
+ * flag and odd helpers start one ply deeper so the threads do not all search the same tree.
+ * <p>
+ * Moves are packed ints generated into one {@link MoveList} per ply, so once every ply has
+ * been reached the search allocates nothing.
+ */
+class Search {
+    private final Board board;
+    private final boolean isWhite;
+    private final SearchLimits limits;
+    private final TranspositionTable table;  // Null when the table is switched off
+    private final AtomicBoolean helperStop;  // Set once the main thread has finished
+    private final int threadId;
+    private final long timeStart;
+    private final long deadline;
+    private final long startNanos;
+    private LongSupplier nodeCounter;  // Nodes reported to the listener, this thread's if null
+
+    private static final int DELTA_MARGIN = 200;  // Positional swing a capture may still bring beyond the material
+
+    private static final int PV_STRIDE = SearchLimits.MAX_DEPTH + 1;
+    private static final int PV_SCORE = 1 << 30;
+    private static final int HASH_MOVE_SCORE = 1 << 29;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    private static final int HISTORY_LIMIT = 1 << 20;  // History is halved when an entry reaches this
+    private static final int TABLE_MOVE_MASK = 0xFFFF;  // The table keeps the 16 low bits: squares, promotion and capture flag
+
+    // Move ordering state, all moves packed as in BitBoard
+    private final int[] killers = new int[2 * PV_STRIDE];  // Two per ply
+    private final int[] history = new int[2 * 64 * 64];  // Butterfly table by colour, from and to square
+    private final int[] pvTable = new int[PV_STRIDE * PV_STRIDE];  // Triangular, row per ply
+    private final int[] pvLength = new int[PV_STRIDE + 1];
+    private final int[] principalVariation = new int[PV_STRIDE];  // Of the last completed iteration
+    private int principalVariationLength;
+    private MoveList[] moveLists = new MoveList[PV_STRIDE];  // One per ply, quiescence plies included
+
+    private long nodes;  // Main search nodes
+    private long quiescenceNodes;
+    private boolean abortAllowed;  // False while the main thread runs its first iteration so there is always a move
+    private boolean aborted;
+    private int completedDepth;
+    private int bestScore;
+    private int bestMove;  // 0 until an iteration has completed
+    private int rootBestMove;  // Best move so far of the iteration being searched
+    private final long[] depthNanos = new long[SearchLimits.MAX_DEPTH + 1];  // Time each depth was completed at
+
+    private long probes;
+    private long hits;
+    private long cutoffs;
+    private long stores;
+    private long betaCutoffs;
+    private long firstMoveCutoffs;  // Cutoffs caused by the first legal move searched
+
+    Search(Board board, boolean isWhite, SearchLimits limits, TranspositionTable table, AtomicBoolean helperStop,
+           int threadId, long timeStart, long startNanos) {
+        this.board = board;
+        this.isWhite = isWhite;
+        this.limits = limits;
+        this.table = table;
+        this.helperStop = helperStop;
+        this.threadId = threadId;
+        this.timeStart = timeStart;
+        this.startNanos = startNanos;
+        long budget = limits.getTimeBudgetMs();
+        this.deadline = budget >= Long.MAX_VALUE - timeStart ? Long.MAX_VALUE : timeStart + budget;
+        this.abortAllowed = threadId != 0;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    long getBetaCutoffs() {
+        return betaCutoffs;
+    }
+
+    long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * The best move packed as in {@link BitBoard}, or 0 if there is none.
+     */
+    int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Nanoseconds from the start of the search until {@code depth} was completed, or -1.
+     */
+    long getDepthNanos(int depth) {
+        return depth <= completedDepth ? depthNanos[depth] : -1;
+    }
+
+    /**
+     * Counts the nodes reported to the listener of the limits, e.g. summed over all threads.
+     */
+    void setNodeCounter(LongSupplier nodeCounter) {
+        this.nodeCounter = nodeCounter;
+    }
+
+    void flushStatistics() {
+        if (table != null) {
+            table.addStatistics(probes, hits, cutoffs, stores);
+        }
+    }
+
+    // Polled at every node; the clock is only read every 1024 nodes. The node limit counts
+    // quiescence nodes too and only applies to the main thread, helpers stop with it
+    private boolean shouldAbort() {
+        if (!aborted && abortAllowed) {
+            long visited = nodes + quiescenceNodes;
+            aborted = limits.isStopped() || helperStop.get()
+                    || threadId == 0 && visited >= limits.getMaxNodes()
+                    || (visited & 1023) == 0 && System.currentTimeMillis() >= deadline;
+        }
+        return aborted;
+    }
+
+    // Starting another iteration is pointless once half the budget is gone, it would not finish
+    private boolean hasTimeForNextIteration() {
+        return deadline == Long.MAX_VALUE || System.currentTimeMillis() - timeStart < (deadline - timeStart) / 2;
+    }
+
+    private void completeIteration(int depth) {
+        completedDepth = depth;
+        depthNanos[depth] = System.nanoTime() - startNanos;
+        abortAllowed = true;
+    }
+
+    /**
+     * Deepens until the limits are reached and returns the best move of the last completed
+     * iteration, packed as in {@link BitBoard}, or 0 if there is no legal move.
+     */
+    int run() {
+        int firstDepth = 1 + (threadId & 1);
+        for (int depth = Math.min(firstDepth, limits.getMaxDepth()); depth <= limits.getMaxDepth(); depth++) {
+            rootBestMove = 0;
+            int score = alphaBeta(depth, -AI.INFINITY, AI.INFINITY, 0, true);
+            if (aborted) {
+                break;
+            }
+            bestMove = rootBestMove;
+            bestScore = score;
+            principalVariationLength = pvLength[0];
+            System.arraycopy(pvTable, 0, principalVariation, 0, principalVariationLength);
+            completeIteration(depth);
+            SearchListener listener = limits.getListener();
+            if (listener != null && threadId == 0) {
+                long visited = nodeCounter != null ? nodeCounter.getAsLong() : nodes + quiescenceNodes;
+                listener.iterationCompleted(depth, score, visited, depthNanos[depth],
+                        Arrays.copyOf(principalVariation, principalVariationLength));
+            }
+            if (bestMove == 0 || Math.abs(score) >= AI.MATE_THRESHOLD || !hasTimeForNextIteration()) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    private MoveList moveList(int ply) {
+        if (ply == moveLists.length) {
+            moveLists = Arrays.copyOf(moveLists, ply * 2);
+        }
+        if (moveLists[ply] == null) {
+            moveLists[ply] = new MoveList();
+        }
+        return moveLists[ply];
+    }
+
+    // Negamax: scores are from the point of view of the side to move, evaluateBoard from the AI's.
+    // onPv is set while the path from the root follows the previous iteration's principal variation.
+    // The best move at the root is left in rootBestMove
+    private int alphaBeta(int depth, int alpha, int beta, int ply, boolean onPv) {
+        pvLength[ply] = 0;
+        if (depth == 0) {
+            return quiescence(alpha, beta, ply);
+        }
+        nodes++;
+        if (shouldAbort()) {
+            return 0;
+        }
+
+        long key = board.hashKey();
+        int hashMove = 0;
+        if (table != null) {
+            probes++;
+            long entry = table.probe(key);
+            if (entry != 0) {
+                hits++;
+                hashMove = TranspositionTable.move(entry);
+                int score = fromTableScore(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth
+                        && (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                        || bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    cutoffs++;
+                    return score;
+                }
+            }
+        }
+
+        MoveList moves = moveList(ply);
+        board.generateLegalMoves(moves);
+        if (moves.isEmpty()) {
+            // No legal move: checkmate if in check, stalemate otherwise. Nearer mates score higher
+            return board.isKingInCheck(board.isWhiteTurn()) ? -AI.CHECKMATE_VALUE + ply : 0;
+        }
+        int pvMove = onPv && ply < principalVariationLength ? principalVariation[ply] : 0;
+        scoreMoves(moves, ply, pvMove, hashMove);
+        int alphaOriginal = alpha;
+        int bestEval = -AI.INFINITY;
+        int bestMove = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, i);
+            board.makeMove(move);
+            int eval = -alphaBeta(depth - 1, -beta, -alpha, ply + 1, move == pvMove);
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (eval > bestEval) {
+                bestEval = eval;
+                bestMove = move;
+                if (ply == 0) {
+                    rootBestMove = move;
+                }
+            }
+            if (eval > alpha) {
+                alpha = eval;
+                updatePrincipalVariation(ply, move);
+            }
+            if (beta <= alpha) {
+                betaCutoffs++;
+                if (i == 0) {
+                    firstMoveCutoffs++;
+                }
+                if (!BitBoard.isCapture(move) && BitBoard.movePromotion(move) == 0) {
+                    recordQuietCutoff(move, ply, depth, board.isWhiteTurn());
+                }
+                break;
+            }
+        }
+
+        if (table != null) {
+            int bound = bestEval <= alphaOriginal ? TranspositionTable.UPPER_BOUND
+                    : bestEval >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            stores++;
+            table.store(key, depth, bound, toTableScore(bestEval, ply), bestMove & TABLE_MOVE_MASK);
+        }
+        return bestEval;
+    }
+
+    private void updatePrincipalVariation(int ply, int packedMove) {
+        int row = ply * PV_STRIDE;
+        int childRow = row + PV_STRIDE;
+        int childLength = pvLength[ply + 1];
+        pvTable[row] = packedMove;
+        System.arraycopy(pvTable, childRow, pvTable, row + 1, childLength);
+        pvLength[ply] = childLength + 1;
+    }
+
+    // A quiet move that caused a cutoff becomes a killer at this ply and gains history
+    private void recordQuietCutoff(int packedMove, int ply, int depth, boolean whiteToMove) {
+        if (killers[2 * ply] != packedMove) {
+            killers[2 * ply + 1] = killers[2 * ply];
+            killers[2 * ply] = packedMove;
+        }
+        int index = historyIndex(packedMove, whiteToMove);
+        history[index] += depth * depth;
+        if (history[index] >= HISTORY_LIMIT) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    private static int historyIndex(int packedMove, boolean whiteToMove) {
+        return (whiteToMove ? 0 : 4096) | (packedMove & 0xFFF);  // Colour, from and to square
+    }
+
+    // Principal variation move, hash move, captures and promotions by MVV-LVA, killers, then
+    // quiet moves by history
+    private void scoreMoves(MoveList moves, int ply, int pvMove, int hashMove) {
+        boolean whiteToMove = board.isWhiteTurn();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (move == pvMove) {
+                score = PV_SCORE;
+            } else if ((move & TABLE_MOVE_MASK) == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (BitBoard.isCapture(move) || BitBoard.movePromotion(move) != 0) {
+                score = CAPTURE_SCORE + mvvLva(move);
+            } else if (move == killers[2 * ply]) {
+                score = KILLER_SCORE + 1;
+            } else if (move == killers[2 * ply + 1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[historyIndex(move, whiteToMove)];
+            }
+            moves.setScore(i, score);
+        }
+    }
+
+    // Selection sort done lazily: most nodes cut off after a few moves
+    private static int pickNext(MoveList moves, int index) {
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (moves.getScore(i) > moves.getScore(best)) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            moves.swap(index, best);
+        }
+        return moves.get(index);
+    }
+
+    // Resolves captures and promotions until the position is quiet, so that depth 0 is not
+    // evaluated in the middle of an exchange. The side to move may stand pat instead of capturing,
+    // unless it is in check: then every evasion is searched, and having none is checkmate
+    private int quiescence(int alpha, int beta, int ply) {
+        quiescenceNodes++;
+        if (shouldAbort()) {
+            return 0;
+        }
+        boolean inCheck = board.isKingInCheck(board.isWhiteTurn());
+        MoveList moves = moveList(ply);
+        int standPat = -AI.INFINITY;
+        if (inCheck) {
+            board.generateLegalMoves(moves);
+            if (moves.isEmpty()) {
+                return -AI.CHECKMATE_VALUE + ply;
+            }
+        } else {
+            standPat = evaluate();
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            board.generateLegalCaptures(moves);
+        }
+        int bestEval = standPat;
+        for (int i = 0; i < moves.size(); i++) {
+            moves.setScore(i, mvvLva(moves.get(i)));
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, i);
+            // Delta pruning: even winning the piece for free would not reach alpha
+            if (!inCheck && BitBoard.movePromotion(move) == 0
+                    && standPat + board.evaluationTables().middlegameValue(capturedType(move)) + DELTA_MARGIN <= alpha) {
+                continue;
+            }
+            board.makeMove(move);
+            int eval = -quiescence(-beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (eval > bestEval) {
+                bestEval = eval;
+            }
+            if (eval >= beta) {
+                break;
+            }
+            alpha = Math.max(alpha, eval);
+        }
+        return bestEval;
+    }
+
+    // Static evaluation from the point of view of the side to move
+    private int evaluate() {
+        int evaluation = AI.evaluateBoard(board, isWhite);
+        return board.isWhiteTurn() == isWhite ? evaluation : -evaluation;
+    }
+
+    // Mate scores depend on the distance from the root; the table keeps them relative to the node
+    private static int toTableScore(int score, int ply) {
+        return score >= AI.MATE_THRESHOLD ? score + ply : score <= -AI.MATE_THRESHOLD ? score - ply : score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        return score >= AI.MATE_THRESHOLD ? score - ply : score <= -AI.MATE_THRESHOLD ? score + ply : score;
+    }
+
+    // Most valuable victim first, least valuable attacker among equal victims; quiet moves score 0
+    private int mvvLva(int move) {
+        int score = 0;
+        if (BitBoard.isCapture(move)) {
+            int from = BitBoard.moveFrom(move);
+            int attacker = BitBoard.pieceType(board.getPiece(from & 7, from >>> 3));
+            score += 8 * (1 + capturedType(move)) + BitBoard.KING - attacker;
+        }
+        score += 8 * BitBoard.movePromotion(move);
+        return score;
+    }
+
+    // Type of the piece a capture takes, a pawn for en passant where the target square is empty
+    private int capturedType(int move) {
+        if ((move & BitBoard.FLAG_EN_PASSANT) != 0) {
+            return BitBoard.PAWN;
+        }
+        int to = BitBoard.moveTo(move);
+        return BitBoard.pieceType(board.getPiece(to & 7, to >>> 3));
+    }
+}
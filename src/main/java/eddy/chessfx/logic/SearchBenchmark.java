@@ -0,0 +1,71 @@
+package eddy.chessfx.logic;
+
+/**
+ * Searches a fixed set of positions with the transposition table off and on and reports
+ * the node counts, table statistics and search time. Node counts include quiescence nodes,
+ * which are also shown separately for the search with the table, as is the share of beta
+ * cutoffs caused by the first move searched.
+ * <p>
+ * Run with {@code java eddy.chessfx.logic.SearchBenchmark [depth] [hashMb]}.
+ */
+public class SearchBenchmark {
+    // Benchmark positions as move sequences in coordinate notation from the initial position
+    static final String[] POSITIONS = {
+            "",
+            "e2e4 e7e5 g1f3 b8c6 f1c4 f8c5",
+            "d2d4 d7d5 c2c4 e7e6 b1c3 g8f6 c1g5 f8e7",
+            "e2e4 c7c5 g1f3 d7d6 d2d4 c5d4 f3d4 g8f6 b1c3 a7a6",
+            "e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6 e1g1 f8e7",
+            "e2e4 e7e5 g1f3 b8c6 d2d4 e5d4 f3d4 d8h4 b1c3 f8b4",
+    };
+
+    static Board setupPosition(String moves) {
+        Board board = new Board();
+        for (String coordinates : moves.trim().split("\\s+")) {
+            if (coordinates.isEmpty()) {
+                continue;
+            }
+            Move move = board.findMove(coordinates);
+            if (move == null || !board.makeMove(move)) {
+                throw new IllegalArgumentException("Illegal move " + coordinates + " in \"" + moves + "\"");
+            }
+        }
+        return board;
+    }
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int hashMb = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        AI.setHashSizeMb(hashMb);
+        TranspositionTable table = AI.getTranspositionTable();
+
+        long totalWithout = 0;
+        long totalWith = 0;
+        long totalMillis = 0;
+        System.out.printf("%-4s %12s %12s %8s %12s %10s %10s %10s %8s %8s%n", "pos", "nodes(noTT)", "nodes(TT)", "saved", "quiescence", "probes", "hits", "cutoffs", "1stcut", "ms(TT)");
+        for (int i = 0; i < POSITIONS.length; i++) {
+            AI.setUseTranspositionTable(false);
+            Board board = setupPosition(POSITIONS[i]);
+            AI.findBestMove(board, board.isWhiteTurn(), depth);
+            long without = AI.getLastSearchNodes();
+
+            AI.setUseTranspositionTable(true);
+            table.clear();
+            table.resetStatistics();
+            AI.findBestMove(board, board.isWhiteTurn(), depth);
+            long with = AI.getLastSearchNodes();
+            long millis = AI.getLastSearchNanos() / 1_000_000;
+            long quiescence = AI.getLastSearchQuiescenceNodes();
+            double firstMoveCutoffRate = AI.getLastSearchFirstMoveCutoffRate();
+
+            totalWithout += without;
+            totalWith += with;
+            totalMillis += millis;
+            System.out.printf("%-4d %12d %12d %7.1f%% %12d %10d %10d %10d %7.1f%% %8d%n", i, without, with,
+                    100.0 * (without - with) / without, quiescence, table.getProbes(), table.getHits(), table.getCutoffs(),
+                    100 * firstMoveCutoffRate, millis);
+        }
+        System.out.printf("%-4s %12d %12d %7.1f%% %54s %8d%n", "all", totalWithout, totalWith,
+                100.0 * (totalWithout - totalWith) / totalWithout, "", totalMillis);
+    }
+}
@@ -0,0 +1,87 @@
+package eddy.chessfx.logic;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits of one AI search. The search deepens iteratively until any limit is reached and
+ * then plays the best move of the last completed iteration. Unset limits do not apply.
+ */
+public class SearchLimits {
+    public static final int MAX_DEPTH = 64;
+
+    private int maxDepth = MAX_DEPTH;
+    private long maxNodes = Long.MAX_VALUE;
+    private long timeBudgetMs = Long.MAX_VALUE;
+    private AtomicBoolean stopFlag = new AtomicBoolean();
+    private SearchListener listener;
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits().setMaxDepth(maxDepth);
+    }
+
+    public static SearchLimits time(long timeBudgetMs) {
+        return new SearchLimits().setTimeBudgetMs(timeBudgetMs);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public SearchLimits setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, Math.min(maxDepth, MAX_DEPTH));
+        return this;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public SearchLimits setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    public long getTimeBudgetMs() {
+        return timeBudgetMs;
+    }
+
+    public SearchLimits setTimeBudgetMs(long timeBudgetMs) {
+        this.timeBudgetMs = timeBudgetMs;
+        return this;
+    }
+
+    /**
+     * Uses {@code stopFlag} as the external stop signal, e.g. one shared with a UI or protocol thread.
+     */
+    public SearchLimits setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+        return this;
+    }
+
+    public AtomicBoolean getStopFlag() {
+        return stopFlag;
+    }
+
+    /**
+     * Reports every iteration the search completes to {@code listener}.
+     */
+    public SearchLimits setListener(SearchListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public SearchListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Asks a running search to finish; it returns the best move found so far.
+     */
+    public void stop() {
+        stopFlag.set(true);
+    }
+
+    public boolean isStopped() {
+        return stopFlag.get();
+    }
+}
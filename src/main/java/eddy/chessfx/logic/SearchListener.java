@@ -0,0 +1,16 @@
+package eddy.chessfx.logic;
+
+/**
+ * Told about the progress of a search, e.g. to print UCI info lines. Called on the main
+ * search thread, so it should return quickly.
+ */
+public interface SearchListener {
+
+    /**
+     * The main thread completed the iteration at {@code depth}. {@code score} is in
+     * centipawns for the side to move, beyond {@link Engine#isMateScore(int)} for a mate;
+     * {@code nodes} counts every search thread and {@code principalVariation} holds the
+     * expected moves from the root, packed as in {@link BitBoard}.
+     */
+    void iterationCompleted(int depth, int score, long nodes, long elapsedNanos, int[] principalVariation);
+}
@@ -0,0 +1,172 @@
+package eddy.chessfx.logic;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table for the search, preallocated from a budget in MB.
+ * <p>
+ * Each entry is two {@code long}s: the packed data and the position key XOR-ed with that
+ * data. A probe only accepts an entry whose two halves still agree, so a torn write never
+ * returns data for the wrong position. Data layout: bits 0-31 score, 32-47 move (the low 16
+ * bits of the {@link BitBoard} move packing: squares, promotion and capture flag), 48-55 depth,
+ * 56-57 bound, 58-63 search age.
+ * <p>
+ * Entries live in buckets of two. A store replaces the entry of the same position, an empty
+ * slot, or else the slot whose entry is shallowest once aged entries are penalised.
+ * <p>
+ * The parallel search shares one table between its threads without locking: racing stores
+ * may lose an entry but never corrupt one, since a mixed key and data pair fails the check.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;  // Score is at least the stored value (fail high)
+    public static final int UPPER_BOUND = 3;  // Score is at most the stored value (fail low)
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_SIZE = 2;
+    private static final int AGE_PENALTY = 4;  // Depth an entry loses for every search it is older
+
+    private long[] keys;
+    private long[] data;
+    private int bucketMask;
+    private int age;
+
+    private long probes;
+    private long hits;
+    private long cutoffs;
+    private long stores;
+
+    public TranspositionTable(int sizeMb) {
+        resize(sizeMb);
+    }
+
+    /**
+     * Reallocates the table to the largest power-of-two entry count fitting in {@code sizeMb}.
+     */
+    public void resize(int sizeMb) {
+        long entries = Math.max(BUCKET_SIZE, Long.highestOneBit(Math.max(1, sizeMb) * 1024L * 1024L / ENTRY_BYTES));
+        entries = Math.min(entries, 1L << 30);
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        bucketMask = (int) (entries / BUCKET_SIZE) - 1;
+        age = 0;
+        resetStatistics();
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        age = 0;
+    }
+
+    /**
+     * Marks the start of a new search; entries from earlier searches become easier to replace.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0x3F;
+    }
+
+    /**
+     * Returns the packed entry stored for {@code key}, or 0 if there is none.
+     */
+    public long probe(long key) {
+        int index = (int) (key & bucketMask) * BUCKET_SIZE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry != 0 && (keys[i] ^ entry) == key) {
+                return entry;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = (int) (key & bucketMask) * BUCKET_SIZE;
+        int target = index;
+        int worst = Integer.MAX_VALUE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry == 0) {
+                target = i;
+                break;
+            }
+            if ((keys[i] ^ entry) == key) {
+                if (move == 0) {
+                    move = move(entry);  // Keep the best move of a shallower search of this position
+                }
+                target = i;
+                break;
+            }
+            int value = depth(entry) - AGE_PENALTY * ((age - age(entry)) & 0x3F);
+            if (value < worst) {
+                worst = value;
+                target = i;
+            }
+        }
+        long entry = (score & 0xFFFFFFFFL)
+                | ((long) (move & 0xFFFF) << 32)
+                | ((long) Math.min(depth, 0xFF) << 48)
+                | ((long) bound << 56)
+                | ((long) age << 58);
+        data[target] = entry;
+        keys[target] = key ^ entry;
+    }
+
+    /**
+     * Adds the counters of one search thread. Threads count privately and add them once at
+     * the end so that probing does not make every thread write to the same cache line.
+     */
+    public synchronized void addStatistics(long probes, long hits, long cutoffs, long stores) {
+        this.probes += probes;
+        this.hits += hits;
+        this.cutoffs += cutoffs;
+        this.stores += stores;
+    }
+
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry >>> 32) & 0xFFFF;
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 56) & 0x3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 58) & 0x3F;
+    }
+
+    public synchronized long getProbes() {
+        return probes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getCutoffs() {
+        return cutoffs;
+    }
+
+    public synchronized long getStores() {
+        return stores;
+    }
+
+    public int getCapacity() {
+        return data.length;
+    }
+
+    public synchronized void resetStatistics() {
+        probes = 0;
+        hits = 0;
+        cutoffs = 0;
+        stores = 0;
+    }
+}
@@ -0,0 +1,360 @@
+package eddy.chessfx.match;
+
+import eddy.chessfx.io.Game;
+import eddy.chessfx.io.PgnReader;
+import eddy.chessfx.io.PgnWriter;
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.logic.Engine;
+import eddy.chessfx.logic.EvaluationParams;
+import eddy.chessfx.logic.MoveList;
+import eddy.chessfx.logic.SearchLimits;
+import eddy.chessfx.pieces.Bishop;
+import eddy.chessfx.pieces.King;
+import eddy.chessfx.pieces.Knight;
+import eddy.chessfx.pieces.Piece;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plays a match between two engine configurations without the JavaFX toolkit. Games run in
+ * parallel on a fixed pool, each on one thread with an {@link Engine} per side and worker, so
+ * the configurations may differ in search limits, table size and evaluation weights. Every
+ * opening is played twice with the colours swapped. Engines limited by depth or nodes play
+ * the same game from the same opening every time, so each pair of games starts from the next
+ * book position followed by {@code randomPlies} random legal plies, drawn from a generator
+ * seeded with {@code seed} and the pair. Without random plies a match is cut to two games per
+ * book position, as further games would only repeat earlier ones. Finished games are appended
+ * to the PGN file as they come in, and the result is reported as Elo with its error, the
+ * likelihood of superiority and, if requested, an SPRT that ends the match once it decides.
+ * <p>
+ * A game ends by checkmate, stalemate, the fifty-move rule, threefold repetition, insufficient
+ * material or, as a draw, at the ply limit.
+ * <p>
+ * Run with {@code java eddy.chessfx.match.MatchRunner [key=value ...]}, where the keys are
+ * {@code games} (default 100), {@code concurrency} (default the number of cores),
+ * {@code book} (a .pgn file, whose games end in the opening positions, or a file of FEN/EPD
+ * lines), {@code randomPlies} (default 8 without a book and 0 with one), {@code seed} (default
+ * 1), {@code pgn} (output file), {@code maxPlies} (default 400), {@code sprt=elo0,elo1},
+ * {@code alpha} and {@code beta} (default 0.05), and per engine, prefixed with {@code a.} or
+ * {@code b.}: {@code name}, {@code depth} (default 4), {@code nodes}, {@code time} in ms per
+ * move, {@code hash} in MB (default 16) and {@code eval}, a file written by
+ * {@link eddy.chessfx.logic.EvaluationTuner}. Results are from the side of engine a.
+ */
+public class MatchRunner {
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int DEFAULT_HASH_MB = 16;
+    private static final int FIFTY_MOVE_PLIES = 100;
+
+    private final Config[] configs;
+    private final List<Board> openings;
+    private final int randomPlies;
+    private final long seed;
+    private final int maxPlies;
+    private final String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd"));
+    private final AtomicBoolean stop = new AtomicBoolean();  // Set once the SPRT has decided
+    // Engines of the worker thread, one per configuration, reused from game to game
+    private final ThreadLocal<Engine[]> engines;
+
+    private record Config(String name, int depth, long nodes, long timeMs, int hashMb, EvaluationParams params) {
+        SearchLimits limits() {
+            SearchLimits limits = SearchLimits.depth(depth).setMaxNodes(nodes);
+            return timeMs > 0 ? limits.setTimeBudgetMs(timeMs) : limits;
+        }
+    }
+
+    // The outcome of one game; score is from the side of engine a
+    private record Played(int round, Game game, double score, String termination) {
+    }
+
+    private MatchRunner(Config[] configs, List<Board> openings, int randomPlies, long seed, int maxPlies) {
+        this.configs = configs;
+        this.openings = openings;
+        this.randomPlies = randomPlies;
+        this.seed = seed;
+        this.maxPlies = maxPlies;
+        this.engines = ThreadLocal.withInitial(() -> new Engine[]{
+                new Engine(configs[0].hashMb(), configs[0].params()),
+                new Engine(configs[1].hashMb(), configs[1].params())});
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                System.out.println("Expected key=value, got " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        int games = Integer.parseInt(options.getOrDefault("games", "100"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int maxPlies = Integer.parseInt(options.getOrDefault("maxPlies", "400"));
+        Path pgnPath = options.containsKey("pgn") ? Path.of(options.get("pgn")) : null;
+        double alpha = Double.parseDouble(options.getOrDefault("alpha", "0.05"));
+        double beta = Double.parseDouble(options.getOrDefault("beta", "0.05"));
+        double[] sprt = null;
+        if (options.containsKey("sprt")) {
+            String[] bounds = options.get("sprt").split(",");
+            sprt = new double[]{Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1])};
+        }
+        Config[] configs = {config(options, "a"), config(options, "b")};
+        List<Board> openings = options.containsKey("book") ? readBook(Path.of(options.get("book"))) : List.of(new Board());
+        if (openings.isEmpty()) {
+            System.out.println("No opening positions in " + options.get("book"));
+            System.exit(1);
+        }
+        int randomPlies = Integer.parseInt(options.getOrDefault("randomPlies", options.containsKey("book") ? "0" : "8"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        if (randomPlies <= 0 && games > 2 * openings.size()) {
+            System.out.printf("Only %d games, later ones would repeat them; use a larger book or randomPlies%n",
+                    2 * openings.size());
+            games = 2 * openings.size();
+        }
+
+        System.out.printf("%s vs %s: %d games, %d openings, %d random plies, %d threads%n",
+                configs[0].name(), configs[1].name(), games, openings.size(), Math.max(0, randomPlies), concurrency);
+        MatchRunner runner = new MatchRunner(configs, openings, randomPlies, seed, maxPlies);
+        MatchStatistics statistics = runner.run(games, concurrency, pgnPath, sprt, alpha, beta);
+        System.out.println("Final: " + statistics.summary());
+    }
+
+    private static Config config(Map<String, String> options, String engine) throws IOException {
+        String prefix = engine + ".";
+        String eval = options.get(prefix + "eval");
+        return new Config(
+                options.getOrDefault(prefix + "name", "ChessFX " + engine),
+                Integer.parseInt(options.getOrDefault(prefix + "depth", String.valueOf(DEFAULT_DEPTH))),
+                Long.parseLong(options.getOrDefault(prefix + "nodes", String.valueOf(Long.MAX_VALUE))),
+                Long.parseLong(options.getOrDefault(prefix + "time", "0")),
+                Integer.parseInt(options.getOrDefault(prefix + "hash", String.valueOf(DEFAULT_HASH_MB))),
+                eval == null ? null : EvaluationParams.load(Path.of(eval)));
+    }
+
+    /**
+     * The positions after each game of a PGN file, or the positions of a file with one FEN or
+     * EPD record per line; lines starting with {@code #} are skipped.
+     */
+    static List<Board> readBook(Path path) throws IOException {
+        List<Board> openings = new ArrayList<>();
+        if (path.toString().toLowerCase(Locale.ROOT).endsWith(".pgn")) {
+            try (PgnReader reader = PgnReader.open(path)) {
+                reader.setSkipInvalidGames(true);
+                while (reader.hasNext()) {
+                    openings.add(reader.next().getBoard());
+                }
+            }
+            return openings;
+        }
+        for (String line : Files.readAllLines(path)) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            // EPD operations follow the four position fields instead of the clocks
+            String[] fields = line.split("\\s+");
+            int length = Math.min(fields.length, 6);
+            while (length > 4 && !fields[length - 1].matches("\\d+")) {
+                length--;
+            }
+            try {
+                openings.add(Board.fromFen(String.join(" ", List.of(fields).subList(0, length))));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Skipping book line: " + e.getMessage());
+            }
+        }
+        return openings;
+    }
+
+    private MatchStatistics run(int games, int concurrency, Path pgnPath, double[] sprt, double alpha, double beta)
+            throws IOException, InterruptedException {
+        MatchStatistics statistics = new MatchStatistics();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "match-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Played> completion = new ExecutorCompletionService<>(pool);
+        for (int round = 1; round <= games; round++) {
+            int game = round;
+            completion.submit(() -> play(game));
+        }
+
+        long start = System.nanoTime();
+        try (PgnWriter writer = pgnPath == null ? null : PgnWriter.create(pgnPath)) {
+            for (int finished = 0; finished < games; finished++) {
+                Played played;
+                try {
+                    played = completion.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Game failed", e.getCause());
+                }
+                if (played == null) {
+                    continue;  // Not played, the match was decided
+                }
+                statistics.add(played.score());
+                if (writer != null) {
+                    writer.write(played.game());
+                    writer.flush();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                String line = String.format(Locale.ROOT, "Game %d (round %d, %s): %s", statistics.getGames(),
+                        played.round(), played.termination(), statistics.summary());
+                if (sprt != null) {
+                    double llr = statistics.getLogLikelihoodRatio(sprt[0], sprt[1]);
+                    double lower = MatchStatistics.lowerBound(alpha, beta);
+                    double upper = MatchStatistics.upperBound(alpha, beta);
+                    line += String.format(Locale.ROOT, ", LLR %.2f [%.2f, %.2f]", llr, lower, upper);
+                    if (!stop.get() && (llr >= upper || llr <= lower)) {
+                        stop.set(true);
+                        line += llr >= upper ? ", H1 accepted" : ", H0 accepted";
+                    }
+                }
+                System.out.println(line + String.format(Locale.ROOT, ", %.2f games/s", statistics.getGames() / seconds));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return statistics;
+    }
+
+    // Plays round (1-based) on the worker thread; engine a is white in odd rounds. Returns
+    // null if the match was stopped before the game started
+    private Played play(int round) {
+        if (stop.get()) {
+            return null;
+        }
+        Board board = opening((round - 1) / 2);
+        int white = round % 2 == 1 ? 0 : 1;
+        Engine[] engines = this.engines.get();
+        engines[0].newGame();
+        engines[1].newGame();
+
+        MoveList moves = new MoveList();
+        List<Long> positions = new ArrayList<>();  // Hash keys since the opening, for repetitions
+        positions.add(board.hashKey());
+        String result = "1/2-1/2";
+        String termination;
+        int plies = 0;
+        while (true) {
+            board.generateLegalMoves(moves);
+            if (moves.isEmpty()) {
+                if (board.isKingInCheck(board.isWhiteTurn())) {
+                    result = board.isWhiteTurn() ? "0-1" : "1-0";
+                    termination = "checkmate";
+                } else {
+                    termination = "stalemate";
+                }
+                break;
+            }
+            if (board.getHalfmoveClock() >= FIFTY_MOVE_PLIES) {
+                termination = "fifty-move rule";
+                break;
+            }
+            if (isThreefoldRepetition(positions, board.getHalfmoveClock())) {
+                termination = "threefold repetition";
+                break;
+            }
+            if (isInsufficientMaterial(board)) {
+                termination = "insufficient material";
+                break;
+            }
+            if (plies >= maxPlies) {
+                termination = "ply limit";
+                break;
+            }
+            int side = board.isWhiteTurn() == (white == 0) ? 0 : 1;
+            int move = engines[side].search(board, configs[side].limits());
+            if (!moves.contains(move)) {
+                result = board.isWhiteTurn() ? "0-1" : "1-0";
+                termination = "illegal move by " + configs[side].name();
+                break;
+            }
+            board.makeMove(move);
+            positions.add(board.hashKey());
+            plies++;
+        }
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", configs[0].name() + " vs " + configs[1].name());
+        tags.put("Site", "ChessFX match");
+        tags.put("Date", date);
+        tags.put("Round", String.valueOf(round));
+        tags.put("White", configs[white].name());
+        tags.put("Black", configs[1 - white].name());
+        tags.put("Termination", termination);
+        double whiteScore = result.equals("1-0") ? 1 : result.equals("0-1") ? 0 : 0.5;
+        return new Played(round, Game.fromBoard(board, tags, result), white == 0 ? whiteScore : 1 - whiteScore, termination);
+    }
+
+    // Start of the pair-th pair of games: the next book position, then randomPlies random legal
+    // plies. Draws that end the game at once are drawn again with the next seed
+    private Board opening(int pair) {
+        Board book = openings.get(pair % openings.size());
+        MoveList moves = new MoveList();
+        for (long attempt = 0; ; attempt++) {
+            Board board = new Board(book);
+            Random random = new Random(seed * 1_000_003L + pair + attempt * 7_919L);
+            for (int ply = 0; ply < randomPlies; ply++) {
+                board.generateLegalMoves(moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            board.generateLegalMoves(moves);
+            if (randomPlies <= 0 || !moves.isEmpty() && !isInsufficientMaterial(board)) {
+                return board;
+            }
+        }
+    }
+
+    // The last position occurred twice before; only positions since the last capture or pawn
+    // move with the same side to move can repeat it
+    private static boolean isThreefoldRepetition(List<Long> positions, int halfmoveClock) {
+        int last = positions.size() - 1;
+        long key = positions.get(last);
+        int count = 1;
+        for (int i = last - 2; i >= Math.max(0, last - halfmoveClock); i -= 2) {
+            if (positions.get(i) == key && ++count == 3) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Bare kings, or a king and one minor piece against a bare king
+    private static boolean isInsufficientMaterial(Board board) {
+        int minors = 0;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board.getPiece(x, y);
+                if (piece == null || piece instanceof King) {
+                    continue;
+                }
+                if (!(piece instanceof Knight || piece instanceof Bishop) || ++minors > 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package eddy.chessfx.match;
+
+import java.util.Locale;
+
+/**
+ * Wins, draws and losses of the first engine of a match, with the Elo difference they imply
+ * and a sequential probability ratio test of two Elo hypotheses.
+ * <p>
+ * The SPRT uses the normal approximation of the trinomial model: with score {@code s} and
+ * per-game variance {@code v} measured so far, the log-likelihood ratio of {@code elo1}
+ * against {@code elo0} is {@code N (s1 - s0) (2s - s0 - s1) / (2v)}, where {@code s0} and
+ * {@code s1} are the expected scores of the two hypotheses. The test accepts H1 once the
+ * ratio reaches {@code ln((1 - beta) / alpha)} and H0 once it falls to
+ * {@code ln(beta / (1 - alpha))}.
+ */
+public class MatchStatistics {
+    private static final double Z_95 = 1.959964;
+
+    private int wins;
+    private int draws;
+    private int losses;
+
+    /**
+     * Counts one game; {@code score} is 1, 0.5 or 0 for the first engine.
+     */
+    public void add(double score) {
+        if (score == 1) {
+            wins++;
+        } else if (score == 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+    }
+
+    public int getGames() {
+        return wins + draws + losses;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getDraws() {
+        return draws;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    /**
+     * Mean score of the first engine per game.
+     */
+    public double getScore() {
+        int games = getGames();
+        return games == 0 ? 0.5 : (wins + 0.5 * draws) / games;
+    }
+
+    public double getElo() {
+        return elo(getScore());
+    }
+
+    /**
+     * Half-width of the 95% confidence interval of {@link #getElo()}, infinite while the
+     * games do not tell the engines apart at all.
+     */
+    public double getEloError() {
+        int games = getGames();
+        if (games == 0 || variance() == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double deviation = Math.sqrt(variance() / games);
+        double score = getScore();
+        return (elo(score + Z_95 * deviation) - elo(score - Z_95 * deviation)) / 2;
+    }
+
+    /**
+     * Likelihood of superiority: the probability that the first engine is the stronger one,
+     * from its wins and losses.
+     */
+    public double getLikelihoodOfSuperiority() {
+        if (wins + losses == 0) {
+            return 0.5;
+        }
+        return 0.5 * (1 + erf((wins - losses) / Math.sqrt(2.0 * (wins + losses))));
+    }
+
+    /**
+     * Log-likelihood ratio of the hypothesis that the first engine is {@code elo1} stronger
+     * against the hypothesis that it is {@code elo0} stronger.
+     */
+    public double getLogLikelihoodRatio(double elo0, double elo1) {
+        double variance = variance();
+        if (variance == 0) {
+            return 0;
+        }
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return getGames() * (s1 - s0) * (2 * getScore() - s0 - s1) / (2 * variance);
+    }
+
+    public static double lowerBound(double alpha, double beta) {
+        return Math.log(beta / (1 - alpha));
+    }
+
+    public static double upperBound(double alpha, double beta) {
+        return Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * e.g. "+40 =50 -30, score 54.2%, Elo +29.0 +/- 45.3, LOS 87.4%".
+     */
+    public String summary() {
+        double error = getEloError();
+        return String.format(Locale.ROOT, "+%d =%d -%d, score %.1f%%, Elo %+.1f +/- %s, LOS %.1f%%",
+                wins, draws, losses, 100 * getScore(), getElo(),
+                Double.isInfinite(error) ? "inf" : String.format(Locale.ROOT, "%.1f", error),
+                100 * getLikelihoodOfSuperiority());
+    }
+
+    // Per-game variance of the score
+    private double variance() {
+        int games = getGames();
+        if (games == 0) {
+            return 0;
+        }
+        double score = getScore();
+        double w = (double) wins / games;
+        double d = (double) draws / games;
+        double l = (double) losses / games;
+        return w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score;
+    }
+
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    // Clamped so that a match without wins or losses still gives a finite difference
+    static double elo(double score) {
+        score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    // Abramowitz and Stegun 7.1.26, accurate to 1.5e-7
+    private static double erf(double x) {
+        double t = 1 / (1 + 0.3275911 * Math.abs(x));
+        double y = 1 - t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))))
+                * Math.exp(-x * x);
+        return x >= 0 ? y : -y;
+    }
+}
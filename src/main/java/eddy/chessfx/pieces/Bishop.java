@@ -8,7 +8,7 @@ import java.util.List;
 
 public class Bishop extends Piece {
     public Bishop(boolean isWhite) {
-        super("/images/pieces/bishop-" + (isWhite ? "w" : "b") + ".svg", isWhite);
+        super(isWhite);
     }
 
     // Dla klasy Bishop
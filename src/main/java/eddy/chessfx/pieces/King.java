@@ -8,7 +8,7 @@ import java.util.List;
 
 public class King extends Piece {
     public King(boolean isWhite) {
-        super("/images/pieces/king-" + (isWhite ? "w" : "b") + ".svg", isWhite);
+        super(isWhite);
     }
 
     // Dla klasy King
@@ -30,17 +30,23 @@ public class King extends Piece {
             }
         }
 
-        // Check for castling
-        if (!this.hasMoved()) {
+        // Check for castling (the king may not castle out of or through check)
+        if (!this.hasMoved() && !board.isSquareThreatened(x, y, !this.isWhite())) {
             //King side
             if (!board.isSquareOccupied(x + 1, y) && !board.isSquareOccupied(x + 2, y) &&
-                    board.getPiece(x + 3, y) instanceof Rook && !board.getPiece(x + 3, y).hasMoved()) {
-                moves.add(new Move(x, y, x + 2, y, this, board.getPiece(x + 3, y), null));
+                    board.getPiece(x + 3, y) instanceof Rook && !board.getPiece(x + 3, y).hasMoved() &&
+                    !board.isSquareThreatened(x + 1, y, !this.isWhite())) {
+                Move castling = new Move(x, y, x + 2, y, this, null, null);
+                castling.setCastlingMove(true);
+                moves.add(castling);
             }
             //Queen side
             if (!board.isSquareOccupied(x - 1, y) && !board.isSquareOccupied(x - 2, y) && !board.isSquareOccupied(x - 3, y) &&
-                    board.getPiece(x - 4, y) instanceof Rook && !board.getPiece(x - 4, y).hasMoved()) {
-                moves.add(new Move(x, y, x - 2, y, this, board.getPiece(x - 4, y), null));
+                    board.getPiece(x - 4, y) instanceof Rook && !board.getPiece(x - 4, y).hasMoved() &&
+                    !board.isSquareThreatened(x - 1, y, !this.isWhite())) {
+                Move castling = new Move(x, y, x - 2, y, this, null, null);
+                castling.setCastlingMove(true);
+                moves.add(castling);
             }
         }
 
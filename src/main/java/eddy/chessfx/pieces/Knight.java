@@ -8,7 +8,7 @@ import java.util.List;
 
 public class Knight extends Piece {
     public Knight(boolean isWhite) {
-        super("/images/pieces/knight-" + (isWhite ? "w" : "b") + ".svg", isWhite);
+        super(isWhite);
     }
 
     // Dla klasy Knight
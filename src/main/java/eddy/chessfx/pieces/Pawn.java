@@ -8,7 +8,7 @@ import java.util.List;
 
 public class Pawn extends Piece {
     public Pawn(boolean isWhite) {
-        super("/images/pieces/pawn-" + (isWhite ? "w" : "b") + ".svg", isWhite);
+        super(isWhite);
     }
 
     // Dla klasy Pawn
@@ -20,7 +20,7 @@ public class Pawn extends Piece {
 
         // Ruch o jedno pole do przodu, jeśli pole jest puste
         if (board.isMoveWithinBoard(x, y + direction) && !board.isSquareOccupied(x, y + direction)) {
-            moves.add(new Move(x, y, x, y + direction, this, null, null));
+            addMove(moves, x, y, x, y + direction, null);
             // Ruch o dwa pola do przodu, jeśli pionek jest na swoim początkowym polu
             if (!hasMoved() && !board.isSquareOccupied(x, y + 2 * direction)) {
                 moves.add(new Move(x, y, x, y + 2 * direction, this, null, null));
@@ -33,29 +33,36 @@ public class Pawn extends Piece {
             if (board.isMoveWithinBoard(x + attackDirection, y + direction)) {
                 Piece piece = board.getPiece(x + attackDirection, y + direction);
                 if (piece != null && piece.isWhite() != this.isWhite()) {
-                    moves.add(new Move(x, y, x + attackDirection, y + direction, this, piece, null));
+                    addMove(moves, x, y, x + attackDirection, y + direction, piece);
                 }
             }
         }
 
         // Atak en passant
-        Move lastMove = board.getLastMove();
-        if (lastMove != null) {
-            // Sprawdź, czy ostatni ruch był wykonany przez pionka przeciwnika, który przesunął się o dwa pola
-            if (Math.abs(lastMove.getStartY() - lastMove.getEndY()) == 2 && lastMove.getPieceMoved() instanceof Pawn) {
-                // Sprawdź, czy pionek jest na odpowiednim polu do wykonania bicia w przelocie
-                if (y == (isWhite() ? 3 : 4)) {
-                    // Sprawdź, czy pionek jest na polu bezpośrednio obok pionka, który wykonał ostatni ruch
-                    if (x - lastMove.getEndX() == 1 || x - lastMove.getEndX() == -1) {
-                        moves.add(new Move(x, y, lastMove.getEndX(), y + direction, this, lastMove.getPieceMoved(), null));
-                    }
-                }
+        int enPassantSquare = board.getEnPassantSquare();
+        if (enPassantSquare != -1 && y == (isWhite() ? 3 : 4) && (enPassantSquare >>> 3) == y + direction) {
+            // Sprawdź, czy pionek jest na polu bezpośrednio obok pionka, który wykonał ostatni ruch
+            int targetX = enPassantSquare & 7;
+            if (x - targetX == 1 || x - targetX == -1) {
+                moves.add(new Move(x, y, targetX, y + direction, this, board.getPiece(targetX, y), null));
             }
         }
 
         return moves;
     }
 
+    // A move onto the last row is added once for every piece the pawn can promote to
+    private void addMove(List<Move> moves, int x, int y, int newX, int newY, Piece captured) {
+        if (newY == 0 || newY == 7) {
+            moves.add(new Move(x, y, newX, newY, this, captured, new Queen(isWhite())));
+            moves.add(new Move(x, y, newX, newY, this, captured, new Rook(isWhite())));
+            moves.add(new Move(x, y, newX, newY, this, captured, new Bishop(isWhite())));
+            moves.add(new Move(x, y, newX, newY, this, captured, new Knight(isWhite())));
+        } else {
+            moves.add(new Move(x, y, newX, newY, this, captured, null));
+        }
+    }
+
     @Override
      public Pawn copy() {
         Pawn copy = new Pawn(this.isWhite());
@@ -8,7 +8,7 @@ import java.util.List;
 
 public class Queen extends Piece {
     public Queen(boolean isWhite) {
-        super("/images/pieces/queen-" + (isWhite ? "w" : "b") + ".svg", isWhite);
+        super(isWhite);
     }
 
     // Dla klasy Queen
@@ -8,7 +8,7 @@ import java.util.List;
 
 public class Rook extends Piece {
     public Rook(boolean isWhite) {
-        super("/images/pieces/rook-" + (isWhite ? "w" : "b") + ".svg", isWhite);
+        super(isWhite);
     }
 
     // Dla klasy Rook
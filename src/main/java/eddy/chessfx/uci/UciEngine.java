@@ -0,0 +1,267 @@
+package eddy.chessfx.uci;
+
+import eddy.chessfx.logic.AI;
+import eddy.chessfx.logic.BitBoard;
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.logic.Engine;
+import eddy.chessfx.logic.Move;
+import eddy.chessfx.logic.SearchLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * UCI front end for {@link AI}, reading commands from standard input and answering on standard
+ * output, so the engine can be run by tournament managers and other UCI GUIs.
+ * <p>
+ * Supported: {@code uci}, {@code isready}, {@code ucinewgame}, {@code setoption} for Hash (MB)
+ * and Threads, {@code position [startpos | fen <fen>] [moves ...]}, {@code go} with
+ * {@code depth}, {@code nodes}, {@code movetime}, {@code wtime}, {@code btime}, {@code winc},
+ * {@code binc}, {@code movestogo} and {@code infinite}, {@code stop} and {@code quit}. Searches
+ * run on one background thread, which prints an {@code info} line with depth, score, nodes,
+ * nps, time and principal variation after every iteration, then the {@code bestmove}.
+ * <p>
+ * Run with {@code java eddy.chessfx.uci.UciEngine}.
+ */
+public class UciEngine {
+    private static final int DEFAULT_MOVES_TO_GO = 30;  // Moves the remaining time is shared over when the GUI does not say
+    private static final long MOVE_OVERHEAD_MS = 30;  // Kept back from every move for the GUI and the pipe
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+
+    private final PrintStream out;
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Board board = new Board();
+    private Future<?> search;  // The search in progress or last finished, null before the first
+    private SearchLimits limits;  // Limits of that search, stopped by "stop"
+
+    public UciEngine(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        AI.setVerbose(false);  // Standard output carries the protocol
+        UciEngine engine = new UciEngine(System.out);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!engine.handle(line)) {
+                break;
+            }
+        }
+        engine.stopSearch();
+    }
+
+    /**
+     * Carries out one command line; returns false once the engine should quit.
+     */
+    public boolean handle(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        switch (tokens[0]) {
+            case "uci" -> {
+                send("id name ChessFX");
+                send("id author xEdziu");
+                send("option name Hash type spin default 16 min 1 max " + MAX_HASH_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("uciok");
+            }
+            case "isready" -> send("readyok");
+            case "ucinewgame" -> {
+                stopSearch();
+                AI.getTranspositionTable().clear();
+                board = new Board();
+            }
+            case "setoption" -> {
+                stopSearch();
+                setOption(tokens);
+            }
+            case "position" -> {
+                stopSearch();
+                setPosition(tokens);
+            }
+            case "go" -> {
+                stopSearch();
+                go(tokens);
+            }
+            case "stop" -> stopSearch();
+            case "quit" -> {
+                return false;
+            }
+            default -> {
+                // Unknown commands, and "debug", "register" and "ponderhit", are ignored
+            }
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        // setoption name <id> [value <x>], where the name may contain spaces
+        StringBuilder name = new StringBuilder();
+        String value = null;
+        int i = 1;
+        if (i < tokens.length && tokens[i].equals("name")) {
+            i++;
+        }
+        for (; i < tokens.length; i++) {
+            if (tokens[i].equals("value")) {
+                value = i + 1 < tokens.length ? tokens[i + 1] : null;
+                break;
+            }
+            name.append(name.length() > 0 ? " " : "").append(tokens[i]);
+        }
+        try {
+            switch (name.toString().toLowerCase()) {
+                case "hash" -> AI.setHashSizeMb(Math.max(1, Math.min(MAX_HASH_MB, Integer.parseInt(value))));
+                case "threads" -> AI.setThreads(Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value))));
+                default -> send("info string unknown option " + name);
+            }
+        } catch (NumberFormatException e) {
+            send("info string invalid value " + value + " for " + name);
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        Board position;
+        if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                fen.append(fen.length() > 0 ? " " : "").append(tokens[i]);
+            }
+            try {
+                position = Board.fromFen(fen.toString());
+            } catch (IllegalArgumentException e) {
+                send("info string invalid fen: " + e.getMessage());
+                return;
+            }
+        } else {
+            position = new Board();
+            if (i < tokens.length && tokens[i].equals("startpos")) {
+                i++;
+            }
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                Move move = position.findMove(tokens[i]);
+                if (move == null) {
+                    send("info string illegal move " + tokens[i]);
+                    return;
+                }
+                position.makeMove(move);
+            }
+        }
+        board = position;
+    }
+
+    private void go(String[] tokens) {
+        SearchLimits limits = new SearchLimits();
+        boolean infinite = false;
+        long time = -1;
+        long increment = 0;
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean white = board.isWhiteTurn();
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                String value = i + 1 < tokens.length ? tokens[i + 1] : "0";
+                switch (tokens[i]) {
+                    case "depth" -> limits.setMaxDepth(Integer.parseInt(value));
+                    case "nodes" -> limits.setMaxNodes(Long.parseLong(value));
+                    case "movetime" -> limits.setTimeBudgetMs(Math.max(1, Long.parseLong(value) - MOVE_OVERHEAD_MS));
+                    case "wtime" -> time = white ? Long.parseLong(value) : time;
+                    case "btime" -> time = white ? time : Long.parseLong(value);
+                    case "winc" -> increment = white ? Long.parseLong(value) : increment;
+                    case "binc" -> increment = white ? increment : Long.parseLong(value);
+                    case "movestogo" -> movesToGo = Math.max(1, Integer.parseInt(value));
+                    case "infinite" -> infinite = true;
+                    default -> {
+                        continue;  // Flags such as "ponder", or a value already read
+                    }
+                }
+                if (!tokens[i].equals("infinite")) {
+                    i++;
+                }
+            }
+        } catch (NumberFormatException e) {
+            send("info string invalid go command: " + e.getMessage());
+        }
+        if (time >= 0 && limits.getTimeBudgetMs() == Long.MAX_VALUE) {
+            // An even share of the clock plus most of the increment, never more than half of it
+            long budget = time / movesToGo + increment * 3 / 4;
+            limits.setTimeBudgetMs(Math.max(1, Math.min(budget, time / 2) - MOVE_OVERHEAD_MS));
+        }
+
+        long startNanos = System.nanoTime();
+        limits.setListener((depth, score, nodes, elapsedNanos, principalVariation) -> {
+            StringBuilder info = new StringBuilder("info depth ").append(depth).append(" score ").append(formatScore(score))
+                    .append(" nodes ").append(nodes)
+                    .append(" nps ").append(nodes * 1_000_000_000L / Math.max(1, elapsedNanos))
+                    .append(" time ").append((System.nanoTime() - startNanos) / 1_000_000);
+            if (principalVariation.length > 0) {
+                info.append(" pv");
+                for (int move : principalVariation) {
+                    info.append(' ').append(BitBoard.toCoordinates(move));
+                }
+            }
+            send(info.toString());
+        });
+
+        Board position = new Board(board);
+        boolean waitForStop = infinite;
+        this.limits = limits;
+        search = searcher.submit(() -> {
+            Move best = null;
+            try {
+                best = AI.findBestMove(position, position.isWhiteTurn(), limits);
+            } catch (RuntimeException e) {
+                send("info string search failed: " + e);
+            }
+            // After "go infinite" the best move may only be sent once the GUI says stop
+            while (waitForStop && !limits.isStopped()) {
+                LockSupport.parkNanos(1_000_000);
+            }
+            send("bestmove " + (best == null ? "0000" : BitBoard.toCoordinates(best.getPackedMove())));
+        });
+    }
+
+    // "cp <centipawns>" or "mate <moves>", negative when the side to move is mated
+    static String formatScore(int score) {
+        if (!Engine.isMateScore(score)) {
+            return "cp " + score;
+        }
+        int plies = Engine.pliesToMate(score);
+        return "mate " + (score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+    }
+
+    // Stops the running search, if any, and waits until it has sent its best move
+    private void stopSearch() {
+        if (search == null) {
+            return;
+        }
+        limits.stop();
+        try {
+            search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            send("info string search failed: " + e.getCause());
+        }
+        search = null;
+    }
+
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+}
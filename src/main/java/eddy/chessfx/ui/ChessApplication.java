@@ -1,8 +1,13 @@
 package eddy.chessfx.ui;
 
+import eddy.chessfx.io.Game;
+import eddy.chessfx.io.PgnReader;
 import eddy.chessfx.logic.AI;
 import eddy.chessfx.logic.Board;
-import eddy.chessfx.logic.Move;
+import eddy.chessfx.logic.Evaluation;
+import eddy.chessfx.logic.EvaluationParams;
+import eddy.chessfx.logic.SearchLimits;
+import eddy.chessfx.pieces.Piece;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -15,18 +20,31 @@ import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class ChessApplication extends Application {
+    private static final long AI_MOVE_TIME_MS = 1000;
+    private static final long LAUNCH_NANOS = System.nanoTime();  // Loaded by main, before the toolkit starts
+
     private boolean isPlayerWhite;
     private ChessBoard chessBoard;
+    private final EngineService engineService = new EngineService();
 
     @Override
     public void start(Stage primaryStage) {
+        // Rasterizes the piece sprites in parallel while the dialogs wait for the player
+        PieceSprites.prewarm(PieceView.PIECE_SIZE);
         primaryStage.setTitle("ChessFX");
         primaryStage.getIcons().add(new javafx.scene.image.Image(getClass().getResourceAsStream("/images/king-w.png")));
 
@@ -34,7 +52,7 @@ public class ChessApplication extends Application {
 
         Board board = new Board();
 
-        List<String> gameModeChoices = Arrays.asList("Player vs Player", "Player vs AI");
+        List<String> gameModeChoices = Arrays.asList("Player vs Player", "Player vs AI", "Replay a game");
         ChoiceDialog<String> gameModeDialog = new ChoiceDialog<>("Player vs Player", gameModeChoices);
         gameModeDialog.setTitle("ChessFX");
         gameModeDialog.setHeaderText("Choose a game mode:");
@@ -43,7 +61,11 @@ public class ChessApplication extends Application {
         gameModeStage.getIcons().add(new javafx.scene.image.Image(getClass().getResourceAsStream("/images/king-w.png")));
 
         Optional<String> gameModeResult = gameModeDialog.showAndWait();
-        String gameMode = gameModeResult.orElse("Player vs Player");
+        if (gameModeResult.isPresent() && gameModeResult.get().equals("Replay a game") && startReplay(primaryStage)) {
+            return;
+        }
+        // Falls back to a game between players when no game was loaded for a replay
+        String gameMode = gameModeResult.filter(mode -> !mode.equals("Replay a game")).orElse("Player vs Player");
 
         if (gameMode.equals("Player vs AI")) {
             List<String> colorChoices = Arrays.asList("White", "Black");
@@ -60,23 +82,47 @@ public class ChessApplication extends Application {
             isPlayerWhite = color.equals("White");
         }
 
+        long boardStart = System.nanoTime();
         chessBoard = new ChessBoard(board, isPlayerWhite, gameMode.equals("Player vs Player"));
 
-        chessBoard.setAiMoveRunnable(() -> {
-            if (!chessBoard.isPlayerMove() && gameMode.equals("Player vs AI") && chessBoard.canAiMove()) {
+        // Run with -Dchessfx.bitboard=true to generate the highlighted moves on BitBoard; the AI
+        // always searches on Board, whose search has the table, quiescence and move ordering
+        chessBoard.setUseBitboard(Boolean.getBoolean("chessfx.bitboard"));
+        // -Dchessfx.threads=N limits the AI search to N threads, by default it uses every core
+        AI.setThreads(Integer.getInteger("chessfx.threads", Runtime.getRuntime().availableProcessors()));
+        // -Dchessfx.evalParams=<file> plays with evaluation weights written by EvaluationTuner
+        String evalParams = System.getProperty("chessfx.evalParams");
+        if (evalParams != null) {
+            try {
+                Evaluation.setParams(EvaluationParams.load(Paths.get(evalParams)));
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error loading evaluation parameters: " + e.getMessage());
+            }
+        }
+
+        // The search runs on the engine worker and the move comes back on the JavaFX thread,
+        // so the board stays responsive while the AI thinks
+        Runnable aiMove = () -> {
+            if (!chessBoard.isPlayerMove() && gameMode.equals("Player vs AI") && chessBoard.canAiMove() && !engineService.isThinking()
+                    && !chessBoard.isGameOver()) {
                 System.out.println("AI move");
-                Move bestMove = AI.findBestMove(chessBoard.getChessBoard(), !isPlayerWhite);
-                chessBoard.movePiece(bestMove.getPieceMoved(), bestMove.getEndX(), bestMove.getEndY());
-                chessBoard.setPlayerMove(true);
-                chessBoard.setAiMove(false);
+                engineService.requestMove(chessBoard.getChessBoard(), !isPlayerWhite, SearchLimits.time(AI_MOVE_TIME_MS), bestMove -> {
+                    // Found on a copy of the board, so the piece is looked up on the displayed one
+                    Piece piece = chessBoard.getChessBoard().getPiece(bestMove.getStartX(), bestMove.getStartY());
+                    chessBoard.setPlayerMove(true);
+                    chessBoard.setAiMove(false);
+                    chessBoard.movePiece(piece, bestMove.getEndX(), bestMove.getEndY(), bestMove.getPromotionPiece());
+                });
             }
-        });
+        };
+        chessBoard.setAiMoveRunnable(aiMove);
+        chessBoard.setEngineService(engineService);
 
         AnimationTimer gameLoop = new AnimationTimer() {
             @Override
             public void handle(long now) {
                 if (chessBoard.getIsCheckmate()) {
-                    System.out.println("Checkmate");
+                    System.out.println("Game over");
                     stop();
                     Platform.runLater(() -> {
                         chessBoard.showEndGamePopup(chessBoard.winnerString);
@@ -90,7 +136,19 @@ public class ChessApplication extends Application {
         root.setPadding(new Insets(10));
         root.setBackground(new Background(new BackgroundFill(Color.LIGHTGRAY, CornerRadii.EMPTY, Insets.EMPTY)));
 
-        primaryStage.setScene(new Scene(root));
+        Scene scene = new Scene(root);
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                // Time to first frame, also without the time spent in the dialogs
+                long now = System.nanoTime();
+                System.out.printf("First frame after %d ms, %d ms after the dialogs closed%n",
+                        (now - LAUNCH_NANOS) / 1_000_000, (now - boardStart) / 1_000_000);
+                Runnable listener = this;
+                Platform.runLater(() -> scene.removePostLayoutPulseListener(listener));
+            }
+        });
+        primaryStage.setScene(scene);
 
         primaryStage.setMinHeight(700);
         primaryStage.setMinWidth(700);
@@ -98,7 +156,75 @@ public class ChessApplication extends Application {
         primaryStage.show();
         if (gameMode.equals("Player vs AI")) {
             gameLoop.start();
+            aiMove.run();  // Only moves when the AI plays white
+        }
+    }
+
+    // Asks for a PGN file and shows one of its games in a ReplayViewer; returns false if no
+    // game was loaded
+    private boolean startReplay(Stage primaryStage) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open Game");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PGN Files", "*.pgn"));
+        File file = fileChooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return false;
         }
+        // The picker only needs a line per game, so games are not kept while the file is
+        // read; the chosen one is read again afterwards
+        List<String> gameChoices;
+        try (Stream<Game> stream = PgnReader.games(file.toPath())) {
+            gameChoices = stream.map(game -> game.getTags().getOrDefault("White", "?") + " - "
+                    + game.getTags().getOrDefault("Black", "?") + " " + game.getResult()).toList();
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.println("Error loading game: " + e.getMessage());
+            return false;
+        }
+        if (gameChoices.isEmpty()) {
+            System.out.println("No game found in " + file);
+            return false;
+        }
+
+        int index = 0;
+        if (gameChoices.size() > 1) {
+            List<String> numberedChoices = new ArrayList<>(gameChoices.size());
+            for (int i = 0; i < gameChoices.size(); i++) {
+                numberedChoices.add((i + 1) + ". " + gameChoices.get(i));
+            }
+            ChoiceDialog<String> gameDialog = new ChoiceDialog<>(numberedChoices.get(0), numberedChoices);
+            gameDialog.setTitle("ChessFX");
+            gameDialog.setHeaderText("Choose a game to replay:");
+            gameDialog.setContentText("Game:");
+            Optional<String> gameResult = gameDialog.showAndWait();
+            if (gameResult.isEmpty()) {
+                return false;
+            }
+            index = numberedChoices.indexOf(gameResult.get());
+        }
+        Game game;
+        try (Stream<Game> stream = PgnReader.games(file.toPath())) {
+            game = stream.skip(index).findFirst().orElse(null);
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.println("Error loading game: " + e.getMessage());
+            return false;
+        }
+        if (game == null) {
+            System.out.println("Game " + (index + 1) + " is no longer in " + file);
+            return false;
+        }
+
+        ReplayViewer viewer = new ReplayViewer(game);
+        viewer.setPadding(new Insets(10));
+        viewer.setBackground(new Background(new BackgroundFill(Color.LIGHTGRAY, CornerRadii.EMPTY, Insets.EMPTY)));
+        primaryStage.setTitle("ChessFX - " + file.getName());
+        primaryStage.setScene(new Scene(viewer));
+        primaryStage.show();
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        engineService.close();
     }
 
     public static void main(String[] args) {
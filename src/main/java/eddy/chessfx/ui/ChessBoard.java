@@ -1,5 +1,8 @@
 package eddy.chessfx.ui;
 
+import eddy.chessfx.io.Game;
+import eddy.chessfx.io.PgnWriter;
+import eddy.chessfx.logic.BitBoard;
 import eddy.chessfx.logic.Board;
 import eddy.chessfx.logic.Move;
 import eddy.chessfx.pieces.*;
@@ -15,30 +18,39 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.FileChooser;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class ChessBoard extends GridPane {
     private static final int SIZE = 8;
     private static final int SQUARE_SIZE = 75;
+    private static final String DRAW = "Draw";  // winnerString after a stalemate
     private final Board chessBoard;
     private final Rectangle[][] squares = new Rectangle[SIZE][SIZE];
+    private final StackPane[][] cells = new StackPane[SIZE][SIZE];  // Grid cell of every square, by row and column
+    private final BitSet highlightedSquares = new BitSet(SIZE * SIZE);  // Squares, row * SIZE + column, not in their plain colour
+    private final Map<Piece, PieceView> pieceViews = new HashMap<>();  // View node of each model piece
     private final Glow glow = new Glow(0.5);
     private Piece selectedPiece = null;
     private boolean isPlayerWhite;
     private boolean isPlayerVsPlayer;
-    private boolean isCheckmate = false;
+    private boolean isCheckmate = false;  // Set once the game is over, by checkmate or stalemate
     private boolean isPlayerMove = true;
     private boolean canAiMove = false;
-    public String winnerString = "";
-    private Runnable aiMoveRunnable;
+    public String winnerString = "";  // "White", "Black" or DRAW once the game is over
+    private Runnable aiMoveRunnable;  // Asks the engine for a move when it is the AI's turn
+    private EngineService engineService;  // Cancelled when the game ends, restarts or is left
+    private boolean useBitboard = false;  // Generate highlighted moves with BitBoard
+    private long checkmateTestedHash;  // Position of the last checkmate test, which the game loop asks for every frame
 
     public ChessBoard(Board chessBoard, boolean isPlayerWhite, boolean isPlayerVsPlayer) {
         this.chessBoard = chessBoard;
@@ -65,10 +77,18 @@ public class ChessBoard extends GridPane {
         return isPlayerMove;
     }
 
+    public void setUseBitboard(boolean useBitboard) {
+        this.useBitboard = useBitboard;
+    }
+
     public void setAiMoveRunnable(Runnable aiMoveRunnable) {
         this.aiMoveRunnable = aiMoveRunnable;
     }
 
+    public void setEngineService(EngineService engineService) {
+        this.engineService = engineService;
+    }
+
     private void drawBoard() {
         for (int row = 0; row < SIZE; row++) {
             for (int col = 0; col < SIZE; col++) {
@@ -77,11 +97,14 @@ public class ChessBoard extends GridPane {
                 square.setFill((row + col) % 2 == 0 ? Color.WHITE : Color.GRAY);
                 square.setStroke(Color.rgb(0, 0, 0, 0.5));
                 squares[row][col] = square;
+                cells[row][col] = cell;
                 cell.getChildren().add(square);
                 this.add(cell, col, row);
             }
         }
         this.setGridLinesVisible(true);
+        highlightedSquares.clear();
+        checkmateTestedHash = 0;
     }
 
     private void placePieces() {
@@ -89,16 +112,23 @@ public class ChessBoard extends GridPane {
             for (int col = 0; col < SIZE; col++) {
                 Piece piece = chessBoard.getPiece(col, row);
                 if (piece != null) {
-                    StackPane cell = getNodeByRowColumnIndex(row, col);
-                    cell.getChildren().add(piece);
-                    setupClickHandlers(piece);
+                    cells[row][col].getChildren().add(getPieceView(piece));
                 }
             }
         }
     }
 
-    private void setupClickHandlers(Piece piece) {
-        piece.setOnMouseClicked(event -> {
+    private PieceView getPieceView(Piece piece) {
+        return pieceViews.computeIfAbsent(piece, p -> {
+            PieceView view = new PieceView(p);
+            setupClickHandlers(view);
+            return view;
+        });
+    }
+
+    private void setupClickHandlers(PieceView view) {
+        Piece piece = view.getPiece();
+        view.setOnMouseClicked(event -> {
             if ((piece.isWhite() == chessBoard.isWhiteTurn() && isPlayerVsPlayer) || (piece.isWhite() == isPlayerWhite && !isPlayerVsPlayer)) {
                 System.out.println("Piece clicked: " + piece.getClass().getSimpleName());
                 System.out.println("Piece position: " + piece.getPieceX() + ", " + piece.getPieceY());
@@ -106,16 +136,15 @@ public class ChessBoard extends GridPane {
                 highlightPossibleMoves(piece);
                 selectedPiece = piece;
                 System.out.println("Selected piece: " + selectedPiece.getClass().getSimpleName());
-                squares[piece.getPieceY()][piece.getPieceX()].setEffect(glow);
-                squares[piece.getPieceY()][piece.getPieceX()].setFill(Color.rgb(128, 0, 128, 0.10));
+                highlight(piece.getPieceX(), piece.getPieceY(), Color.rgb(128, 0, 128, 0.10));
             } else if (selectedPiece != null) {
                 Move proposedMove = new Move(selectedPiece.getPieceX(), selectedPiece.getPieceY(), piece.getPieceX(), piece.getPieceY(), selectedPiece, piece, null);
-                List<Move> possibleMoves = selectedPiece.getPossibleMoves(chessBoard, selectedPiece.getPieceX(), selectedPiece.getPieceY());
-                if (possibleMoves.contains(proposedMove)) {
+                List<Move> possibleMoves = getLegalMoves(selectedPiece);
+                if (possibleMoves.stream().anyMatch(move -> move.getEndX() == proposedMove.getEndX() && move.getEndY() == proposedMove.getEndY())) {
                     System.out.println("Piece captured: " + piece.getClass().getSimpleName());
-                    movePiece(selectedPiece, piece.getPieceX(), piece.getPieceY());
+                    boolean moved = movePiece(selectedPiece, piece.getPieceX(), piece.getPieceY());
                     selectedPiece = null;
-                    if (!isPlayerVsPlayer) {
+                    if (moved && !isPlayerVsPlayer) {
                         isPlayerMove = !isPlayerMove;
                         setAiMove(true);
                     }
@@ -146,13 +175,14 @@ public class ChessBoard extends GridPane {
                             if (chessBoard.isSquareOccupied(finalCol, finalRow)) {
                                 System.out.println("Piece captured: " + chessBoard.getPiece(finalCol, finalRow).getClass().getSimpleName());
                             }
-                            movePiece(selectedPiece, finalCol, finalRow);
+                            // A highlighted square need not be a legal target, e.g. the king in check
+                            boolean moved = movePiece(selectedPiece, finalCol, finalRow);
                             selectedPiece = null;
                             resetBoardColors();
-                        }
-                        if (!isPlayerVsPlayer) {
-                            isPlayerMove = !isPlayerMove;
-                            setAiMove(true);
+                            if (moved && !isPlayerVsPlayer) {
+                                isPlayerMove = !isPlayerMove;
+                                setAiMove(true);
+                            }
                         }
                     } else if (piece != null && ((piece.isWhite() == chessBoard.isWhiteTurn() && isPlayerVsPlayer) || (piece.isWhite() == isPlayerWhite && !isPlayerVsPlayer))) {
                         System.out.println("Piece clicked: " + piece.getClass().getSimpleName());
@@ -161,8 +191,7 @@ public class ChessBoard extends GridPane {
                         highlightPossibleMoves(piece);
                         selectedPiece = piece;
                         System.out.println("Selected piece: " + selectedPiece.getClass().getSimpleName());
-                        squares[piece.getPieceY()][piece.getPieceX()].setEffect(glow);
-                        squares[piece.getPieceY()][piece.getPieceX()].setFill(Color.rgb(128, 0, 128, 0.10));
+                        highlight(piece.getPieceX(), piece.getPieceY(), Color.rgb(128, 0, 128, 0.10));
                     }
                     event.consume();
                 });
@@ -170,115 +199,88 @@ public class ChessBoard extends GridPane {
         }
     }
 
+    private List<Move> getLegalMoves(Piece piece) {
+        if (useBitboard) {
+            return BitBoard.fromBoard(chessBoard).getLegalMoves(chessBoard, piece.getPieceX(), piece.getPieceY());
+        }
+        return chessBoard.getLegalMoves(piece.getPieceX(), piece.getPieceY());
+    }
+
     public void highlightPossibleMoves(Piece piece) {
-        List<Move> moves = piece.getPossibleMoves(chessBoard, piece.getPieceX(), piece.getPieceY());
-
-        moves = moves.stream()
-                .filter(move -> {
-                    Board tempBoard = new Board(chessBoard);  // Create a temporary copy of the board
-                    if (tempBoard.validateMove(move)) {  // Check if the move is valid
-                        if (tempBoard.makeMove(move)) {
-                            return !tempBoard.isKingInCheck(piece.isWhite());  // Check if the king is still in check
-                        }
-                    }
-                    return false;
-                })
-                .toList();
+        List<Move> moves = getLegalMoves(piece);
 
         for (Move move : moves) {
-            Rectangle targetSquare = squares[move.getEndY()][move.getEndX()];
-            targetSquare.setEffect(glow);
+            Color fill;
             if (piece instanceof Pawn && Math.abs(move.getStartX() - move.getEndX()) == 1) {
-                targetSquare.setFill(Color.rgb(255, 0, 0, 0.10));  // Red highlight
+                fill = Color.rgb(255, 0, 0, 0.10);  // Red highlight
             } else if (piece instanceof Pawn &&
                     (move.getEndY() == 0 || move.getEndY() == 7)) {
-                targetSquare.setFill(Color.rgb(0, 0, 255, 0.10));  // Blue highlight
+                fill = Color.rgb(0, 0, 255, 0.10);  // Blue highlight
             } else if (piece instanceof King && move.isCastlingMove()) {
-                targetSquare.setFill(Color.rgb(0, 255, 255, 0.10));  // Cyan highlight
+                fill = Color.rgb(0, 255, 255, 0.10);  // Cyan highlight
             } else if (piece instanceof King && Math.abs(move.getEndX() - piece.getPieceX()) == 2) {
-                targetSquare.setFill(Color.rgb(255, 255, 0, 0.10));  // Yellow highlight
+                fill = Color.rgb(255, 255, 0, 0.10);  // Yellow highlight
             } else if (chessBoard.isSquareOccupied(move.getEndX(), move.getEndY())) {
-                targetSquare.setFill(Color.rgb(255, 0, 0, 0.10));  // Red highlight
+                fill = Color.rgb(255, 0, 0, 0.10);  // Red highlight
             } else {
-                targetSquare.setFill(Color.rgb(0, 255, 0, 0.10));  // Green highlight
-            }
-            if (piece instanceof Pawn && Math.abs(move.getStartX() - move.getEndX()) == 1 && Math.abs(move.getStartY() - move.getEndY()) == 1) {
-                if (move.getEndY() > 0 && !chessBoard.isSquareOccupied(move.getEndX(), move.getEndY() - 1)) {
-                    targetSquare.setFill(Color.rgb(255, 0, 0, 0.10));  // Red highlight
-                } else if (move.getEndY() < 7 && !chessBoard.isSquareOccupied(move.getEndX(), move.getEndY() + 1)) {
-                    targetSquare.setFill(Color.rgb(255, 0, 0, 0.10));  // Red highlight
-                }
+                fill = Color.rgb(0, 255, 0, 0.10);  // Green highlight
             }
+            highlight(move.getEndX(), move.getEndY(), fill);
         }
 
     }
 
-    void movePiece(Piece piece, int newX, int newY) {
+    boolean movePiece(Piece piece, int newX, int newY) {
+        return movePiece(piece, newX, newY, null);
+    }
+
+    /**
+     * Plays the move on the board and renders the squares it changed; returns false, leaving
+     * the board as it was, if the move is not legal.
+     */
+    boolean movePiece(Piece piece, int newX, int newY, Piece promotionPiece) {
+        int oldX = piece.getPieceX();
+        int oldY = piece.getPieceY();
         Piece targetPiece = chessBoard.getPiece(newX, newY);
-        Move proposedMove = new Move(piece.getPieceX(), piece.getPieceY(), newX, newY, piece, targetPiece, null);
+        // A pawn moving diagonally onto an empty square captures en passant
+        Piece enPassantPawn = piece instanceof Pawn && oldX != newX && targetPiece == null ? chessBoard.getPiece(newX, oldY) : null;
+        Move proposedMove = new Move(oldX, oldY, newX, newY, piece, targetPiece, promotionPiece);
 
-        System.out.println("Move: " + piece.getClass().getSimpleName() + " from " + piece.getPieceX() + ", " + piece.getPieceY() + " to " + newX + ", " + newY);
-        System.out.println("Where actual X and Y are: " + piece.getPieceX() + ", " + piece.getPieceY() + " and new are " + newX + ", " + newY);
+        System.out.println("Move: " + piece.getClass().getSimpleName() + " from " + oldX + ", " + oldY + " to " + newX + ", " + newY);
 
-        if (chessBoard.validateMove(proposedMove) && chessBoard.makeMove(proposedMove)) {
-            // Check if the move was a castling move
-            if (proposedMove.isCastlingMove()) {
-                int rookNewX = newX > piece.getPieceX() ? newX - 1 : newX + 1;  // Rook's new position
-                Piece rook = chessBoard.getPiece(rookNewX, newY);
-                System.out.println("Rook new position: " + rookNewX + ", " + newY);
-                rook.setPosition(rookNewX, newY);
-                updateUIAfterMove(rook, rookNewX, newY, null);
-                System.out.println("Castling move!");
-                System.out.println("Rook pos from object: " + rook.getPieceX() + ", " + rook.getPieceY());
-            }
+        if (!chessBoard.validateMove(proposedMove)) {
+            return false;
+        }
+        if (piece instanceof Pawn && (newY == 0 || newY == 7) && promotionPiece == null) {
+            System.out.println("Pawn promotion!");
+            proposedMove.setPromotionPiece(createNewPiece(showPromotionDialog(), piece.isWhite()));
+        }
 
-            // Check for en passant move
-            if (piece instanceof Pawn && Math.abs(newX - piece.getPieceX()) == 1 ) {
-                System.out.println("En passant move!");
-                int capturedPawnY = !piece.isWhite() ? newY - 1 : newY + 1;  // Y position of the captured pawn
-                Piece capturedPawn = chessBoard.getPiece(newX, capturedPawnY);
-                System.out.println("Captured pawn position: " + newX + ", " + capturedPawnY);
-                if (capturedPawn != null) {
-                    // Remove the captured pawn from the UI
-                    System.out.println("Removing captured pawn from the UI");
-                    StackPane capturedPawnCell = getNodeByRowColumnIndex(capturedPawnY, newX);
-                    capturedPawnCell.getChildren().remove(capturedPawn);
-                    chessBoard.removePiece(newX, capturedPawnY);
-                }
+        boolean moved = chessBoard.makeMove(proposedMove);
+        if (moved) {
+            // Only the squares the move changed are rendered again; a promotion is covered by
+            // the target square, which now holds the new piece
+            renderSquare(oldX, oldY);
+            renderSquare(newX, newY);
+            if (proposedMove.isCastlingMove()) {
+                int rookNewX = newX > oldX ? newX - 1 : newX + 1;  // Rook's new position
+                System.out.println("Castling move! Rook new position: " + rookNewX + ", " + newY);
+                renderSquare(newX > oldX ? SIZE - 1 : 0, newY);
+                renderSquare(rookNewX, newY);
             }
-
-            // Check for pawn promotion
-            if (piece instanceof Pawn && (newY == 0 || newY == 7)) {
-                System.out.println("Pawn promotion!");
-                String pieceType = showPromotionDialog();
-                chessBoard.removePiece(newX, newY);
-                StackPane cell = getNodeByRowColumnIndex(newY, newX);
-                cell.getChildren().remove(piece);
-                Piece newPiece = createNewPiece(pieceType, piece.isWhite());
-                chessBoard.placePiece(newPiece, newX, newY);
-                updateUIAfterMove(newPiece, newX, newY, null);
-                proposedMove.setPromotionPiece(newPiece);
+            if (enPassantPawn != null) {
+                System.out.println("En passant move! Captured pawn position: " + newX + ", " + oldY);
+                renderSquare(newX, oldY);
             }
+            resetBoardColors();
 
-            // Aktualizacja UI musi być wykonana na wątku JavaFX Application
-            Platform.runLater(() -> {
-                piece.setPosition(newX, newY);
-                updateUIAfterMove(piece, newX, newY, targetPiece);
-                resetBoardColors();
-                checkForCheckmate();
-            });
-
-            if (aiMoveRunnable != null) {
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(50);  // Opcjonalny krótki czas oczekiwania na synchronizację UI
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    aiMoveRunnable.run();
-                }).start();
+            // Queued so that it runs after the click handler has passed the turn to the AI; the
+            // search itself runs on the engine worker. Once the game is over there is no move to find
+            if (!checkForCheckmate() && aiMoveRunnable != null) {
+                Platform.runLater(aiMoveRunnable);
             }
         }
+        return moved;
     }
 
     private String showPromotionDialog() {
@@ -304,27 +306,39 @@ public class ChessBoard extends GridPane {
     }
 
     public void highlightKingInCheck(boolean isWhite) {
-        for (int x = 0; x < 8; x++) {
-            for (int y = 0; y < 8; y++) {
-                Piece piece = chessBoard.getPiece(x, y);
-                if (piece instanceof King && piece.isWhite() == isWhite && chessBoard.isKingInCheck(isWhite)) {
-                    squares[y][x].setFill(Color.rgb(255, 255, 0, 0.2)); // Yellow highlight
-                    squares[y][x].setEffect(glow);
-                }
-            }
+        Piece king = chessBoard.getKing(isWhite);
+        if (king != null && chessBoard.isKingInCheck(isWhite)) {
+            highlight(king.getPieceX(), king.getPieceY(), Color.rgb(255, 255, 0, 0.2)); // Yellow highlight
         }
     }
 
+    // Glows and tints one square and remembers it, so that resetBoardColors only repaints
+    // squares that were changed
+    private void highlight(int x, int y, Color fill) {
+        squares[y][x].setEffect(glow);
+        squares[y][x].setFill(fill);
+        highlightedSquares.set(y * SIZE + x);
+    }
+
     private boolean checkForCheckmate() {
+        // Only tested again once the position has changed
+        if (isCheckmate || chessBoard.hashKey() == checkmateTestedHash) {
+            return this.isCheckmate;
+        }
+        checkmateTestedHash = chessBoard.hashKey();
         boolean isWhiteTurn = chessBoard.isWhiteTurn();
         if (chessBoard.isCheckmate(isWhiteTurn) || chessBoard.isCheckmate(!isWhiteTurn)) {
             System.out.println("Checkmate!");
             winnerString = isWhiteTurn ? "Black" : "White";
             System.out.println(winnerString + " wins!");
             this.isCheckmate = true;
-            if (isPlayerVsPlayer) {
-                showEndGamePopup(winnerString);
-            }
+        } else if (chessBoard.isStalemate(isWhiteTurn)) {
+            System.out.println("Stalemate!");
+            winnerString = DRAW;
+            this.isCheckmate = true;
+        }
+        if (this.isCheckmate && isPlayerVsPlayer) {
+            showEndGamePopup(winnerString);
         }
         return this.isCheckmate;
     }
@@ -333,53 +347,67 @@ public class ChessBoard extends GridPane {
         return checkForCheckmate();
     }
 
-    private void updateUIAfterMove(Piece piece, int newX, int newY, Piece targetPiece) {
-        StackPane targetCell = getNodeByRowColumnIndex(newY, newX);
-        if (targetPiece != null) {
-            targetCell.getChildren().remove(targetPiece);
-        }
-        targetCell.getChildren().add(piece);
+    /**
+     * Whether the side to move has no legal move left, by checkmate or stalemate.
+     */
+    public boolean isGameOver() {
+        return checkForCheckmate();
     }
 
-    private void resetBoardColors() {
-        for (int row = 0; row < SIZE; row++) {
-            for (int col = 0; col < SIZE; col++) {
-                Rectangle square = squares[row][col];
-                square.setEffect(null);
-                square.setFill((row + col) % 2 != 0 ? Color.GRAY : Color.WHITE);
+    // Makes the cell show the piece the board has on the square; a cell holds its square and
+    // at most one piece view
+    private void renderSquare(int x, int y) {
+        Piece piece = chessBoard.getPiece(x, y);
+        List<Node> children = cells[y][x].getChildren();
+        if (children.size() > 1) {
+            PieceView shown = (PieceView) children.get(1);
+            if (shown.getPiece() == piece) {
+                return;
+            }
+            children.remove(1);
+            if (chessBoard.getPiece(shown.getPiece().getPieceX(), shown.getPiece().getPieceY()) != shown.getPiece()) {
+                pieceViews.remove(shown.getPiece());  // Captured or promoted
             }
         }
-        highlightKingInCheck(true);
-        highlightKingInCheck(false);
+        if (piece != null) {
+            children.add(getPieceView(piece));
+        }
     }
 
-    private StackPane getNodeByRowColumnIndex(int row, int column) {
-        for (Node node : this.getChildren()) {
-            if (GridPane.getRowIndex(node) == row && GridPane.getColumnIndex(node) == column && node instanceof StackPane) {
-                return (StackPane) node;
-            }
+    private void resetBoardColors() {
+        for (int index = highlightedSquares.nextSetBit(0); index >= 0; index = highlightedSquares.nextSetBit(index + 1)) {
+            int row = index / SIZE;
+            int col = index % SIZE;
+            Rectangle square = squares[row][col];
+            square.setEffect(null);
+            square.setFill((row + col) % 2 != 0 ? Color.GRAY : Color.WHITE);
         }
-        return null; // if not found
+        highlightedSquares.clear();
+        highlightKingInCheck(true);
+        highlightKingInCheck(false);
     }
 
     private void downloadGame(String winner) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Game");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PGN Files", "*.pgn"));
         String userDirectoryString = System.getProperty("user.home") + "/Downloads";
         File userDirectory = new File(userDirectoryString);
         if (!userDirectory.exists()) {
             userDirectory.mkdirs();
         }
         fileChooser.setInitialDirectory(userDirectory);
-        String defaultFileName = "ChessGame_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm")) + ".txt";
+        String defaultFileName = "ChessGame_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd-MM-yyyy_HH-mm")) + ".pgn";
         fileChooser.setInitialFileName(defaultFileName);
 
         File file = fileChooser.showSaveDialog(null);
         if (file != null) {
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-                writer.write(LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy | HH:mm")) + " | Winner: " + winner + "\n");
-                writer.write(chessBoard.getGameInChessNotation());
+            Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("Event", "ChessFX game");
+            tags.put("Date", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+            String result = winner.equals("White") ? "1-0" : winner.equals("Black") ? "0-1" : "1/2-1/2";
+            try (PgnWriter writer = PgnWriter.create(file.toPath())) {
+                writer.write(Game.fromBoard(chessBoard, tags, result));
             } catch (IOException e) {
                 System.out.println("Error saving game: " + e.getMessage());
             }
@@ -387,10 +415,12 @@ public class ChessBoard extends GridPane {
     }
 
     public void showEndGamePopup(String winner) {
+        // The game is over in every mode, so a search still running or queued has nothing to play
+        cancelSearch();
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Game Over");
-        alert.setHeaderText("Checkmate!");
-        alert.setContentText(winner + " wins!");
+        alert.setHeaderText(winner.equals(DRAW) ? "Stalemate!" : "Checkmate!");
+        alert.setContentText(winner.equals(DRAW) ? "The game is drawn." : winner + " wins!");
 
         ButtonType newGameButton = new ButtonType("New Game");
         ButtonType exitButton = new ButtonType("Exit");
@@ -404,12 +434,18 @@ public class ChessBoard extends GridPane {
 
         alert.showAndWait().ifPresent(buttonType -> {
             if (buttonType == newGameButton) {
+                cancelSearch();
                 chessBoard.restartGame();
+                isCheckmate = false;
                 this.getChildren().clear();
+                pieceViews.clear();
                 drawBoard();
                 placePieces();
                 setupSquareClickHandlers();
             } else if (buttonType == exitButton) {
+                if (engineService != null) {
+                    engineService.close();  // System.exit skips Application.stop, which would close it
+                }
                 System.exit(0);
             } else if (buttonType == downloadGameButton) {
                 downloadGame(winner);
@@ -417,6 +453,12 @@ public class ChessBoard extends GridPane {
         });
     }
 
+    private void cancelSearch() {
+        if (engineService != null) {
+            engineService.cancel();
+        }
+    }
+
     public void setPlayerMove(boolean b) {
         isPlayerMove = b;
     }
@@ -0,0 +1,93 @@
+package eddy.chessfx.ui;
+
+import eddy.chessfx.logic.AI;
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.logic.Move;
+import eddy.chessfx.logic.SearchLimits;
+import javafx.application.Platform;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs AI searches on a single background worker so the JavaFX thread never waits for the
+ * engine. A request searches a copy of the board taken when it is made, and the move found is
+ * passed to its callback on the JavaFX thread unless the request has been cancelled or
+ * replaced by then. Cancelling also stops a running search early.
+ * <p>
+ * Requests and cancellations are made from the JavaFX thread.
+ */
+public class EngineService implements AutoCloseable {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chessfx-engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong generation = new AtomicLong();  // Advanced by every request and cancel, stale results are dropped
+    private volatile SearchLimits running;  // Limits of the search in progress, stopped by cancel()
+    private boolean thinking;  // A request is waiting for its move; only used on the JavaFX thread
+
+    /**
+     * Cancels any earlier request and searches {@code board} for the side {@code isWhite}
+     * within {@code limits}, which should not be shared with other searches as cancelling
+     * stops them.
+     */
+    public void requestMove(Board board, boolean isWhite, SearchLimits limits, Consumer<Move> onMove) {
+        cancel();
+        long request = generation.get();
+        Board position = new Board(board);
+        thinking = true;
+        worker.execute(() -> {
+            // Published before the check so that a cancel either skips or stops this search
+            running = limits;
+            if (generation.get() != request) {
+                running = null;
+                return;
+            }
+            Move move = null;
+            try {
+                move = AI.findBestMove(position, isWhite, limits);
+            } catch (RuntimeException e) {
+                System.out.println("Engine error: " + e);
+            } finally {
+                running = null;
+            }
+            Move result = move;
+            Platform.runLater(() -> deliver(request, result, onMove));
+        });
+    }
+
+    private void deliver(long request, Move move, Consumer<Move> onMove) {
+        if (generation.get() != request) {
+            return;
+        }
+        thinking = false;
+        if (move != null) {
+            onMove.accept(move);
+        }
+    }
+
+    /**
+     * Drops the pending request, if any, and stops its search.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        thinking = false;
+        SearchLimits limits = running;
+        if (limits != null) {
+            limits.stop();
+        }
+    }
+
+    public boolean isThinking() {
+        return thinking;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,117 @@
+package eddy.chessfx.ui;
+
+import eddy.chessfx.logic.Board;
+
+/**
+ * Steps through the moves of a finished game in both directions. A copy of the position is
+ * kept every {@code checkpointInterval} plies, so reaching any ply costs at most one copy and
+ * {@code checkpointInterval} moves made or unmade, however long the game is. Nearby plies are
+ * reached by making and unmaking moves on the current board without a copy.
+ * <p>
+ * {@link #getBoard()} is replaced when a jump restarts from a checkpoint, so callers ask for it
+ * again after every move and must not change it.
+ */
+public class GameReplay {
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
+
+    private final int[] moves;  // Packed as in BitBoard
+    private final int checkpointInterval;
+    private final Board[] checkpoints;  // Position after ply i * checkpointInterval
+    private Board board;
+    private int firstPly;  // Ply of the checkpoint the board was copied from, it cannot be unmade further
+    private int ply;
+
+    public GameReplay(Board game) {
+        this(game, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Replays the move history of {@code game} from its start position, which must be legal
+     * throughout as it is for boards read by the PGN reader or played in the view.
+     */
+    public GameReplay(Board game, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+        moves = new int[game.getMoveCount()];
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = game.getHistoryMove(i);
+        }
+
+        Board position = game.getStartFen() == null ? new Board() : Board.fromFen(game.getStartFen());
+        checkpoints = new Board[moves.length / checkpointInterval + 1];
+        for (int i = 0; i <= moves.length; i++) {
+            if (i % checkpointInterval == 0) {
+                checkpoints[i / checkpointInterval] = new Board(position);
+            }
+            if (i < moves.length) {
+                position.makeMove(moves[i]);
+            }
+        }
+        board = new Board(checkpoints[0]);
+    }
+
+    /**
+     * The position at the current ply.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Plies played to reach the current position, from 0 to {@link #getPlyCount()}.
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    public int getPlyCount() {
+        return moves.length;
+    }
+
+    /**
+     * Move {@code index} of the game, packed as in {@link eddy.chessfx.logic.BitBoard}; the
+     * last move played at the current ply is {@code getMove(getPly() - 1)}.
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    public boolean next() {
+        if (ply == moves.length) {
+            return false;
+        }
+        board.makeMove(moves[ply++]);
+        return true;
+    }
+
+    public boolean previous() {
+        if (ply == 0) {
+            return false;
+        }
+        seek(ply - 1);
+        return true;
+    }
+
+    /**
+     * Goes to the position after {@code target} plies, clamped to the game.
+     */
+    public void seek(int target) {
+        target = Math.max(0, Math.min(moves.length, target));
+        int checkpointPly = target / checkpointInterval * checkpointInterval;
+        // Stay on this board when it can get there and needs no more moves than the checkpoint
+        if (target < firstPly || Math.abs(target - ply) > target - checkpointPly) {
+            board = new Board(checkpoints[target / checkpointInterval]);
+            firstPly = checkpointPly;
+            ply = checkpointPly;
+        }
+        while (ply > target) {
+            board.unmakeMove();
+            ply--;
+        }
+        while (ply < target) {
+            board.makeMove(moves[ply++]);
+        }
+    }
+}
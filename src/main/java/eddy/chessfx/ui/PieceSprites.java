@@ -0,0 +1,165 @@
+package eddy.chessfx.ui;
+
+import eddy.chessfx.pieces.Piece;
+import eddy.chessfx.utils.BufferedImageTranscoder;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.image.ImageTranscoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, pre-rendered piece images. Each SVG is rasterized once per pixel size and the
+ * resulting {@link Image} is reused by every {@link PieceView} showing a piece of that kind.
+ * <p>
+ * Sprites are rendered on the common fork/join pool, so {@link #prewarm(int)} rasterizes all
+ * twelve in parallel while the application is still starting. With
+ * {@code -Dchessfx.spriteCache=<dir>} every raster is also kept as a PNG named after the sprite,
+ * its size and a hash of its SVG, and later starts read it back instead of running Batik.
+ */
+public final class PieceSprites {
+    private static final String PIECES_PATH = "/images/pieces/";
+    static final String[] SPRITE_NAMES = {
+            "pawn-w", "knight-w", "bishop-w", "rook-w", "queen-w", "king-w",
+            "pawn-b", "knight-b", "bishop-b", "rook-b", "queen-b", "king-b"};
+    private static final Map<String, CompletableFuture<Image>> SPRITES = new ConcurrentHashMap<>();
+
+    private static volatile Path cacheDirectory = System.getProperty("chessfx.spriteCache") != null
+            ? Paths.get(System.getProperty("chessfx.spriteCache")) : null;
+
+    private PieceSprites() {
+    }
+
+    public static Image get(Piece piece, int size) {
+        return get(piece.getSpriteName(), size);
+    }
+
+    /**
+     * The sprite rasterized {@code size} pixels wide and high, rendered now unless it is
+     * already rendered or being rendered.
+     */
+    public static Image get(String spriteName, int size) {
+        return sprite(spriteName, size).join();
+    }
+
+    /**
+     * Starts rendering every sprite at {@code size} in the background; the future completes
+     * once all of them are ready.
+     */
+    public static CompletableFuture<Void> prewarm(int size) {
+        CompletableFuture<?>[] sprites = new CompletableFuture<?>[SPRITE_NAMES.length];
+        for (int i = 0; i < SPRITE_NAMES.length; i++) {
+            sprites[i] = sprite(SPRITE_NAMES[i], size);
+        }
+        return CompletableFuture.allOf(sprites);
+    }
+
+    /**
+     * Sets the directory of the PNG cache, or turns the cache off if {@code directory} is null.
+     */
+    public static void setCacheDirectory(Path directory) {
+        cacheDirectory = directory;
+    }
+
+    // The future is stored rather than the image so that no map lock is held while rendering
+    private static CompletableFuture<Image> sprite(String spriteName, int size) {
+        return SPRITES.computeIfAbsent(spriteName + "@" + size, key -> CompletableFuture.supplyAsync(() -> {
+            BufferedImage raster = rasterize(spriteName, size);
+            return raster == null ? null : SwingFXUtils.toFXImage(raster, null);
+        }));
+    }
+
+    /**
+     * Renders the sprite {@code size} pixels wide and high, from the PNG cache if it holds it;
+     * returns null if the SVG cannot be read.
+     */
+    static BufferedImage rasterize(String spriteName, int size) {
+        String imagePath = PIECES_PATH + spriteName + ".svg";
+        byte[] svg;
+        try (InputStream resource = PieceSprites.class.getResourceAsStream(imagePath)) {
+            if (resource == null) {
+                System.out.println("Error loading image: " + imagePath + " not found");
+                return null;
+            }
+            svg = resource.readAllBytes();
+        } catch (IOException e) {
+            System.out.println("Error loading image: " + e.getMessage());
+            return null;
+        }
+
+        Path directory = cacheDirectory;
+        Path cached = directory == null ? null : directory.resolve(spriteName + "-" + size + "-" + hash(svg) + ".png");
+        if (cached != null && Files.isRegularFile(cached)) {
+            try {
+                BufferedImage image = ImageIO.read(cached.toFile());
+                if (image != null) {
+                    return image;
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading cached sprite " + cached + ": " + e.getMessage());
+            }
+        }
+
+        BufferedImage image;
+        try {
+            BufferedImageTranscoder trans = new BufferedImageTranscoder();
+            trans.addTranscodingHint(ImageTranscoder.KEY_WIDTH, (float) size);
+            trans.addTranscodingHint(ImageTranscoder.KEY_HEIGHT, (float) size);
+            trans.transcode(new TranscoderInput(new ByteArrayInputStream(svg)), null);
+            image = trans.getBufferedImage();
+        } catch (TranscoderException e) {
+            System.out.println("Error loading image: " + e.getMessage());
+            return null;
+        }
+        if (cached != null) {
+            write(image, cached);
+        }
+        return image;
+    }
+
+    // Writes next to the target first so that a concurrent start never reads half a file
+    private static void write(BufferedImage image, Path target) {
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                ImageIO.write(image, "png", temp.toFile());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.out.println("Error caching sprite " + target + ": " + e.getMessage());
+        }
+    }
+
+    private static String hash(byte[] svg) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(svg);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package eddy.chessfx.ui;
+
+import eddy.chessfx.pieces.Piece;
+import javafx.scene.image.ImageView;
+
+/**
+ * JavaFX node showing a model {@link Piece}. The image comes from {@link PieceSprites},
+ * so creating a view never rasterizes an SVG more than once per piece kind and size.
+ */
+public class PieceView extends ImageView {
+    static final int PIECE_SIZE = 64;
+    private final Piece piece;
+
+    public PieceView(Piece piece) {
+        super(PieceSprites.get(piece, PIECE_SIZE));
+        this.piece = piece;
+        this.setFitWidth(PIECE_SIZE);
+        this.setFitHeight(PIECE_SIZE);
+        this.setPreserveRatio(true);
+    }
+
+    public Piece getPiece() {
+        return piece;
+    }
+}
@@ -0,0 +1,101 @@
+package eddy.chessfx.ui;
+
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.logic.Move;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how fast {@link GameReplay} scrubs through a long game of random legal moves: plies
+ * per second stepping back and forth, and random jumps per second compared with replaying
+ * every jump from the start position. Every position reached is checked against the hash key
+ * recorded when the game was played.
+ * <p>
+ * Run with {@code java eddy.chessfx.ui.ReplayBenchmark [plies=1000]
+ * [checkpointInterval=32] [jumps=20000]}.
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) {
+        int plies = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : GameReplay.DEFAULT_CHECKPOINT_INTERVAL;
+        int jumps = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        long[] hashes = new long[plies + 1];
+        Board game = randomGame(plies, hashes);
+        long start = System.nanoTime();
+        GameReplay replay = new GameReplay(game, interval);
+        System.out.printf("%d plies, checkpoint every %d: built in %.1f ms%n", plies, interval, (System.nanoTime() - start) / 1e6);
+
+        for (int pass = 0; pass <= 3; pass++) {
+            start = System.nanoTime();
+            long steps = 0;
+            for (int sweep = 0; sweep < 10; sweep++) {
+                while (replay.next()) {
+                    steps++;
+                    check(replay, hashes);
+                }
+                while (replay.previous()) {
+                    steps++;
+                    check(replay, hashes);
+                }
+            }
+            double stepSeconds = (System.nanoTime() - start) / 1e9;
+
+            Random random = new Random(pass);
+            start = System.nanoTime();
+            for (int i = 0; i < jumps; i++) {
+                replay.seek(random.nextInt(plies + 1));
+                check(replay, hashes);
+            }
+            double jumpSeconds = (System.nanoTime() - start) / 1e9;
+
+            random = new Random(pass);
+            int fromStartJumps = Math.max(1, jumps / 20);
+            start = System.nanoTime();
+            for (int i = 0; i < fromStartJumps; i++) {
+                int target = random.nextInt(plies + 1);
+                Board board = new Board();
+                for (int ply = 0; ply < target; ply++) {
+                    board.makeMove(game.getHistoryMove(ply));
+                }
+                if (board.hashKey() != hashes[target]) {
+                    throw new IllegalStateException("Replay from the start differs at ply " + target);
+                }
+            }
+            double fromStartSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%s: %.0f plies/s stepping, %.0f jumps/s, %.0f jumps/s replaying from the start%n",
+                    pass == 0 ? "warm-up" : "pass " + pass, steps / stepSeconds, jumps / jumpSeconds,
+                    fromStartJumps / fromStartSeconds);
+        }
+    }
+
+    private static void check(GameReplay replay, long[] hashes) {
+        if (replay.getBoard().hashKey() != hashes[replay.getPly()]) {
+            throw new IllegalStateException("Wrong position at ply " + replay.getPly());
+        }
+    }
+
+    // Random games are played with new seeds until one lasts the requested number of plies
+    private static Board randomGame(int plies, long[] hashes) {
+        for (long seed = 1; ; seed++) {
+            Random random = new Random(seed);
+            Board board = new Board();
+            hashes[0] = board.hashKey();
+            int ply = 0;
+            while (ply < plies) {
+                List<Move> moves = board.getLegalMoves();
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                hashes[++ply] = board.hashKey();
+            }
+            if (ply == plies) {
+                return board;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package eddy.chessfx.ui;
+
+import eddy.chessfx.io.Game;
+import eddy.chessfx.logic.BitBoard;
+import eddy.chessfx.logic.Board;
+import eddy.chessfx.pieces.Piece;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Read-only view of a loaded game that steps and scrubs through its plies with the buttons,
+ * the slider or the arrow, Page Up/Down, Home and End keys. Positions come from a
+ * {@link GameReplay}, and a move only updates the squares whose piece changed and the
+ * highlights of the last move.
+ */
+public class ReplayViewer extends BorderPane {
+    private static final int SIZE = 8;
+    private static final int SQUARE_SIZE = 75;
+    private static final int PAGE_PLIES = 10;
+    private static final Color LAST_MOVE_FILL = Color.rgb(255, 255, 0, 0.35);
+
+    private final GameReplay replay;
+    private final Game game;
+    private final Rectangle[] squares = new Rectangle[SIZE * SIZE];  // By y * SIZE + x, as the board squares
+    private final ImageView[] pieces = new ImageView[SIZE * SIZE];
+    private final String[] shownSprites = new String[SIZE * SIZE];  // Sprite name shown on each square, null if empty
+    private int lastMoveFrom = -1;
+    private int lastMoveTo = -1;
+    private final Slider slider;
+    private final Label moveLabel = new Label();
+    private boolean updatingSlider;
+
+    public ReplayViewer(Game game) {
+        this.game = game;
+        this.replay = new GameReplay(game.getBoard());
+
+        GridPane grid = new GridPane();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                Rectangle square = new Rectangle(SQUARE_SIZE, SQUARE_SIZE);
+                square.setFill(baseFill(x, y));
+                square.setStroke(Color.rgb(0, 0, 0, 0.5));
+                ImageView piece = new ImageView();
+                piece.setFitWidth(PieceView.PIECE_SIZE);
+                piece.setFitHeight(PieceView.PIECE_SIZE);
+                piece.setPreserveRatio(true);
+                squares[y * SIZE + x] = square;
+                pieces[y * SIZE + x] = piece;
+                grid.add(new StackPane(square, piece), x, y);
+            }
+        }
+        grid.setAlignment(Pos.CENTER);
+
+        slider = new Slider(0, replay.getPlyCount(), 0);
+        slider.setBlockIncrement(1);
+        slider.setMajorTickUnit(1);
+        slider.setMinorTickCount(0);
+        slider.setSnapToTicks(true);
+        slider.setFocusTraversable(false);
+        slider.valueProperty().addListener((observable, oldValue, newValue) -> {
+            if (!updatingSlider) {
+                show((int) Math.round(newValue.doubleValue()));
+            }
+        });
+        HBox.setHgrow(slider, Priority.ALWAYS);
+
+        Button first = button("|<", () -> show(0));
+        Button previous = button("<", () -> show(replay.getPly() - 1));
+        Button next = button(">", () -> show(replay.getPly() + 1));
+        Button last = button(">|", () -> show(replay.getPlyCount()));
+        HBox controls = new HBox(8, first, previous, slider, next, last);
+        controls.setAlignment(Pos.CENTER);
+
+        Label players = new Label(game.getTags().getOrDefault("White", "?") + " - "
+                + game.getTags().getOrDefault("Black", "?") + "  " + game.getResult());
+        VBox bottom = new VBox(6, controls, moveLabel, players);
+        bottom.setPadding(new Insets(10, 0, 0, 0));
+        bottom.setAlignment(Pos.CENTER);
+
+        setCenter(grid);
+        setBottom(bottom);
+        addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            int ply = replay.getPly();
+            switch (event.getCode()) {
+                case LEFT -> show(ply - 1);
+                case RIGHT -> show(ply + 1);
+                case PAGE_UP -> show(ply - PAGE_PLIES);
+                case PAGE_DOWN -> show(ply + PAGE_PLIES);
+                case HOME -> show(0);
+                case END -> show(replay.getPlyCount());
+                default -> {
+                    return;
+                }
+            }
+            event.consume();
+        });
+        render();
+    }
+
+    private Button button(String text, Runnable action) {
+        Button button = new Button(text);
+        button.setFocusTraversable(false);
+        button.setOnAction(event -> action.run());
+        return button;
+    }
+
+    /**
+     * Shows the position after {@code ply} plies, clamped to the game.
+     */
+    public void show(int ply) {
+        replay.seek(ply);
+        render();
+    }
+
+    private void render() {
+        Board board = replay.getBoard();
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                Piece piece = board.getPiece(x, y);
+                String sprite = piece == null ? null : piece.getSpriteName();
+                int square = y * SIZE + x;
+                // Compared by name, as a jump from a checkpoint brings new piece objects
+                if (sprite == null ? shownSprites[square] != null : !sprite.equals(shownSprites[square])) {
+                    pieces[square].setImage(sprite == null ? null : PieceSprites.get(sprite, PieceView.PIECE_SIZE));
+                    shownSprites[square] = sprite;
+                }
+            }
+        }
+
+        int ply = replay.getPly();
+        int from = ply == 0 ? -1 : BitBoard.moveFrom(replay.getMove(ply - 1));
+        int to = ply == 0 ? -1 : BitBoard.moveTo(replay.getMove(ply - 1));
+        if (from != lastMoveFrom || to != lastMoveTo) {
+            setFill(lastMoveFrom, null);
+            setFill(lastMoveTo, null);
+            setFill(from, LAST_MOVE_FILL);
+            setFill(to, LAST_MOVE_FILL);
+            lastMoveFrom = from;
+            lastMoveTo = to;
+        }
+
+        updatingSlider = true;
+        slider.setValue(ply);
+        updatingSlider = false;
+        if (ply == 0) {
+            moveLabel.setText("Start position");
+        } else {
+            int moveNumber = board.getFullmoveNumber() - (board.isWhiteTurn() ? 1 : 0);
+            moveLabel.setText("Ply " + ply + " of " + replay.getPlyCount() + ": " + moveNumber
+                    + (board.isWhiteTurn() ? "... " : ". ") + game.getSanMoves().get(ply - 1));
+        }
+    }
+
+    // Restores the plain colour of the square when fill is null
+    private void setFill(int square, Color fill) {
+        if (square >= 0) {
+            squares[square].setFill(fill != null ? fill : baseFill(square % SIZE, square / SIZE));
+        }
+    }
+
+    private static Color baseFill(int x, int y) {
+        return (x + y) % 2 == 0 ? Color.WHITE : Color.GRAY;
+    }
+}
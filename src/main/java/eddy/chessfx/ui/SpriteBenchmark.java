@@ -0,0 +1,53 @@
+package eddy.chessfx.ui;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Times rasterizing the twelve piece sprites the way the application starts, without the
+ * JavaFX toolkit: one after another, in parallel as {@link PieceSprites#prewarm(int)} does, or
+ * in parallel through the PNG cache in {@code cacheDir}, which the first run fills and later
+ * runs read. Start a new JVM for every measurement, as class loading is part of the cost.
+ * <p>
+ * Run with {@code java -Djava.awt.headless=true eddy.chessfx.ui.SpriteBenchmark
+ * [sequential|parallel|cached] [size=64] [cacheDir]}.
+ */
+public class SpriteBenchmark {
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "parallel";
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : PieceView.PIECE_SIZE;
+        if (mode.equals("cached")) {
+            if (args.length < 3) {
+                System.out.println("The cached mode needs a cache directory");
+                System.exit(1);
+            }
+            PieceSprites.setCacheDirectory(Path.of(args[2]));
+        }
+
+        String[] names = PieceSprites.SPRITE_NAMES;
+        BufferedImage[] images = new BufferedImage[names.length];
+        long start = System.nanoTime();
+        if (mode.equals("sequential")) {
+            for (int i = 0; i < names.length; i++) {
+                images[i] = PieceSprites.rasterize(names[i], size);
+            }
+        } else {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[names.length];
+            for (int i = 0; i < names.length; i++) {
+                int index = i;
+                futures[i] = CompletableFuture.runAsync(() -> images[index] = PieceSprites.rasterize(names[index], size));
+            }
+            CompletableFuture.allOf(futures).join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (Arrays.stream(images).anyMatch(image -> image == null || image.getWidth() != size)) {
+            System.out.println("A sprite was not rendered at " + size + " pixels");
+            System.exit(1);
+        }
+        System.out.printf("%s: %d sprites at %d px in %.1f ms%n", mode, names.length, size, elapsed / 1e6);
+    }
+}
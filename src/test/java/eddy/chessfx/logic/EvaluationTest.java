@@ -0,0 +1,65 @@
+package eddy.chessfx.logic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The incremental {@link Evaluation} must agree with the full-rescan reference evaluator, on
+ * {@link Board} and on {@link BitBoard}, over the positions of seeded random games, including
+ * every position reached again by unmaking a move.
+ */
+class EvaluationTest {
+    private static final int GAMES = 40;
+    private static final int MAX_PLIES = 300;
+
+    @Test
+    void incrementalEvaluationMatchesReference() {
+        Random random = new Random(20240301L);
+        for (int game = 0; game < GAMES; game++) {
+            Board board = new Board();
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                List<Move> moves = board.getLegalMoves();
+                // Every move is tried so the sums are also checked after unmakeMove
+                for (Move move : moves) {
+                    board.makeMove(move);
+                    assertMatchesReference(board, game, ply);
+                    board.unmakeMove();
+                    assertMatchesReference(board, game, ply);
+                }
+                assertMatchesReference(board, game, ply);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    @Test
+    void initialMaterialIsAllMiddlegameForAnyPhaseWeights() {
+        int[][] weights = {{0, 1, 1, 2, 4, 0}, {0, 1, 1, 2, 5, 0}, {0, 0, 0, 1, 2, 0}, {1, 2, 2, 3, 6, 1}};
+        for (int[] phaseWeights : weights) {
+            EvaluationParams params = EvaluationParams.defaults();
+            System.arraycopy(phaseWeights, 0, params.phaseWeights, 0, phaseWeights.length);
+            Board board = new Board();
+            board.makeMove(board.findMove("e2e4"));
+            board.setEvaluationTables(new Evaluation.Tables(params));
+            int packed = board.packedEvaluation();
+            assertEquals(Evaluation.middlegame(packed), Evaluation.evaluate(board, true),
+                    "phase weights " + Arrays.toString(phaseWeights));
+        }
+    }
+
+    private static void assertMatchesReference(Board board, int game, int ply) {
+        int expected = AI.evaluateBoardReference(board, true);
+        String where = "game " + game + ", ply " + ply;
+        assertEquals(expected, Evaluation.evaluate(board, true), "incremental, " + where);
+        assertEquals(-expected, Evaluation.evaluate(board, false), "incremental for black, " + where);
+        assertEquals(expected, Evaluation.evaluate(BitBoard.fromBoard(board), true), "BitBoard, " + where);
+    }
+}
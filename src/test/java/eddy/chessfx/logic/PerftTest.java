@@ -0,0 +1,104 @@
+package eddy.chessfx.logic;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Perft node counts of {@link BitBoard} and {@link Board} against the published counts of the
+ * standard positions, and a cross-check of the legal moves of both implementations over
+ * seeded random games; both pack moves the same way, flags included.
+ */
+class PerftTest {
+    private static final int MAX_DEPTH = 4;
+    private static final int RANDOM_GAMES = 200;
+    private static final int RANDOM_GAME_PLIES = 200;
+
+    @TestFactory
+    List<DynamicTest> bitBoardNodeCounts() {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (int i = 0; i < Perft.SUITE_FENS.length; i++) {
+            String fen = Perft.SUITE_FENS[i];
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                long expected = Perft.SUITE_NODES[i][depth - 1];
+                int perftDepth = depth;
+                tests.add(DynamicTest.dynamicTest(Perft.SUITE_NAMES[i] + " perft(" + depth + ")",
+                        () -> assertEquals(expected, Perft.perft(BitBoard.fromBoard(Board.fromFen(fen)), perftDepth))));
+            }
+        }
+        return tests;
+    }
+
+    @TestFactory
+    List<DynamicTest> boardNodeCounts() {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (int i = 0; i < Perft.SUITE_FENS.length; i++) {
+            String fen = Perft.SUITE_FENS[i];
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                long expected = Perft.SUITE_NODES[i][depth - 1];
+                int perftDepth = depth;
+                tests.add(DynamicTest.dynamicTest(Perft.SUITE_NAMES[i] + " perft(" + depth + ")",
+                        () -> assertEquals(expected, Perft.perft(Board.fromFen(fen), perftDepth))));
+            }
+        }
+        return tests;
+    }
+
+    @Test
+    void bitBoardGeneratesTheLegalMovesOfBoard() {
+        Random random = new Random(20240101L);
+        int[] moves = new int[BitBoard.MAX_MOVES];
+        MoveList boardMoves = new MoveList();
+        for (int game = 0; game < RANDOM_GAMES; game++) {
+            Board board = new Board();
+            BitBoard bitBoard = BitBoard.fromBoard(board);
+            for (int ply = 0; ply < RANDOM_GAME_PLIES; ply++) {
+                int count = bitBoard.generateLegalMoves(moves, 0);
+                board.generateLegalMoves(boardMoves);
+                int[] expected = new int[boardMoves.size()];
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] = boardMoves.get(i);
+                }
+                int[] actual = Arrays.copyOf(moves, count);
+                Arrays.sort(expected);
+                Arrays.sort(actual);
+                int gameNumber = game;
+                int plyNumber = ply;
+                assertArrayEquals(expected, actual, () -> "game " + gameNumber + ", ply " + plyNumber
+                        + ": Board " + describe(expected) + " BitBoard " + describe(actual));
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                board.makeMove(move);
+                bitBoard.makeMove(move);
+            }
+        }
+    }
+
+    // Coordinates of each move with its flags, e.g. "e5d6/ep", so a failure shows the difference
+    private static String describe(int[] moves) {
+        StringBuilder description = new StringBuilder("[");
+        for (int move : moves) {
+            description.append(description.length() > 1 ? " " : "").append(BitBoard.toCoordinates(move));
+            if ((move & BitBoard.FLAG_EN_PASSANT) != 0) {
+                description.append("/ep");
+            } else if ((move & BitBoard.FLAG_CASTLING) != 0) {
+                description.append("/castle");
+            } else if ((move & BitBoard.FLAG_DOUBLE_PUSH) != 0) {
+                description.append("/double");
+            } else if (BitBoard.isCapture(move)) {
+                description.append("/x");
+            }
+        }
+        return description.append(']').toString();
+    }
+}